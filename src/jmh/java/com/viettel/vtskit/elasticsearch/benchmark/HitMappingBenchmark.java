@@ -0,0 +1,119 @@
+package com.viettel.vtskit.elasticsearch.benchmark;
+
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.mapper.JacksonDocumentMapper;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit-to-DTO mapping as done by {@code ElasticsearchService.searchInternal}, on canned responses of different
+ * sizes and document widths. {@code sourceAsString} is the previous String based path, kept as a baseline.
+ * Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitMappingBenchmark {
+
+    public enum Shape {
+        SMALL(SmallDocument.class),
+        WIDE(WideDocument.class);
+
+        private final Class<?> type;
+
+        Shape(Class<?> type) {
+            this.type = type;
+        }
+    }
+
+    @Param({"10", "100", "1000"})
+    public int hits;
+
+    @Param({"SMALL", "WIDE"})
+    public Shape shape;
+
+    private final DocumentMapper documentMapper = new JacksonDocumentMapper();
+    private SearchResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder json = new StringBuilder()
+                .append("{\"took\":3,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":").append(hits).append(",\"relation\":\"eq\"},\"max_score\":1.0,\"hits\":[");
+        for (int i = 0; i < hits; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"_index\":\"phone\",\"_type\":\"_doc\",\"_id\":\"").append(i).append("\",\"_score\":1.0,\"_source\":")
+                    .append(shape == Shape.SMALL ? smallSource(i) : wideSource(i))
+                    .append('}');
+        }
+        json.append("]}}");
+
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(
+                NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json.toString())) {
+            response = SearchResponse.fromXContent(parser);
+        }
+    }
+
+    private static String smallSource(int i) {
+        return "{\"id\":\"" + i + "\",\"name\":\"iPhone " + i + "\",\"price\":" + (500 + i) + ".5}";
+    }
+
+    private static String wideSource(int i) {
+        return "{\"id\":\"" + i + "\",\"name\":\"iPhone " + i + " Pro Max\","
+                + "\"description\":\"A reasonably long product description used to make the document wide enough to matter " + i + "\","
+                + "\"brand\":\"Apple\",\"category\":\"smartphone\",\"color\":\"graphite\",\"sku\":\"SKU-" + i + "\","
+                + "\"barcode\":\"8934567" + i + "\",\"currency\":\"VND\",\"status\":\"ACTIVE\","
+                + "\"price\":" + (500 + i) + ".5,\"discount\":0.1,\"rating\":4.7,\"stock\":" + (1000 + i) + ",\"sold\":" + i + ","
+                + "\"views\":" + (i * 31) + ",\"warrantyMonths\":12,\"releaseYear\":2022,\"available\":true,\"featured\":false,"
+                + "\"tags\":[\"5g\",\"oled\",\"ios\",\"camera\"],"
+                + "\"dimensions\":{\"width\":78.1,\"height\":160.8,\"depth\":7.65,\"weight\":240},"
+                + "\"seller\":{\"id\":\"s" + (i % 17) + "\",\"name\":\"Store " + (i % 17) + "\",\"city\":\"Ha Noi\",\"rating\":4.9},"
+                + "\"ignored\":\"unknown properties are skipped\"}";
+    }
+
+    @Benchmark
+    public List<Object> documentMapper() throws IOException {
+        final SearchHit[] searchHits = response.getHits().getHits();
+        final List<Object> list = new ArrayList<>(searchHits.length);
+        for (SearchHit hit : searchHits) {
+            list.add(documentMapper.read(hit.getSourceRef(), shape.type));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Object> sourceAsString() throws IOException {
+        final SearchHit[] searchHits = response.getHits().getHits();
+        final List<Object> list = new ArrayList<>(searchHits.length);
+        for (SearchHit hit : searchHits) {
+            list.add(JacksonDocumentMapper.MAPPER.readValue(hit.getSourceAsString(), shape.type));
+        }
+        return list;
+    }
+}
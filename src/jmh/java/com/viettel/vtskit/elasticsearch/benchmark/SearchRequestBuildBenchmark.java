@@ -0,0 +1,127 @@
+package com.viettel.vtskit.elasticsearch.benchmark;
+
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import com.viettel.vtskit.elasticsearch.search.ElasticSearchBuilder;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of every {@code ElasticSearchBuilder.build*SearchRequest}, optionally including the JSON serialization
+ * that happens before the request is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchRequestBuildBenchmark {
+    private static final String INDEX = "phone";
+
+    @Param({"false", "true"})
+    public boolean serialize;
+
+    private SearchRequestDTO textRequest;
+    private SearchRequestDTO regexpRequest;
+    private SearchRequestDTO wildcardRequest;
+    private SearchRequestDTO boostingRequest;
+    private BoolQueryBuilder boolQuery;
+
+    @Setup
+    public void setUp() {
+        textRequest = request("iphone 13 pro max");
+        textRequest.setFields(Arrays.asList("name", "description", "brand"));
+
+        regexpRequest = request("iph[a-z]*");
+        regexpRequest.setFields(Arrays.asList("name", "description"));
+
+        wildcardRequest = request("iph*");
+        wildcardRequest.setFields(Arrays.asList("name", "description"));
+
+        boostingRequest = request("iphone 13 pro max");
+        Map<String, Float> weights = new LinkedHashMap<>();
+        weights.put("name", 5f);
+        weights.put("description", 2f);
+        weights.put("brand", 1.5f);
+        weights.put("category", 1f);
+        weights.put("tags", 1f);
+        boostingRequest.setFieldsAndWeights(weights);
+
+        boolQuery = QueryBuilders.boolQuery()
+                .must(QueryBuilders.matchQuery("name", "iphone"))
+                .filter(QueryBuilders.rangeQuery("price").gte(500).lte(1500))
+                .filter(QueryBuilders.termQuery("available", true));
+    }
+
+    private static SearchRequestDTO request(String textSearch) {
+        SearchRequestDTO request = new SearchRequestDTO();
+        request.setTextSearch(textSearch);
+        request.setSortBy("price");
+        request.setOrderBy(SortOrder.DESC);
+        request.setPage(3);
+        request.setSize(50);
+        return request;
+    }
+
+    private Object consume(SearchRequest request) {
+        return serialize ? request.source().toString() : request;
+    }
+
+    @Benchmark
+    public Object handleSearch() {
+        return consume(ElasticSearchBuilder.buildHandleSearchRequest(INDEX, textRequest, boolQuery, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object multiFieldSearch() {
+        return consume(ElasticSearchBuilder.buildMultiFieldSearchRequest(INDEX, textRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object matchPhrasePrefixSearch() {
+        return consume(ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest(INDEX, textRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object matchPhraseSearch() {
+        return consume(ElasticSearchBuilder.buildMatchPhraseSearchRequest(INDEX, textRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object regexpSearch() {
+        return consume(ElasticSearchBuilder.buildRegexpSearchRequest(INDEX, regexpRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object fuzzySearch() {
+        return consume(ElasticSearchBuilder.buildFuzzySearchRequest(INDEX, textRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object wildCardSearch() {
+        return consume(ElasticSearchBuilder.buildWildCardSearchRequest(INDEX, wildcardRequest, WideDocument.class));
+    }
+
+    @Benchmark
+    public Object boostingSearch() {
+        return consume(ElasticSearchBuilder.buildBoostingSearchRequest(INDEX, boostingRequest, WideDocument.class));
+    }
+}
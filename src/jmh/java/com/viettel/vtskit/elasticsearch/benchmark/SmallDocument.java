@@ -0,0 +1,10 @@
+package com.viettel.vtskit.elasticsearch.benchmark;
+
+import lombok.Data;
+
+@Data
+public class SmallDocument {
+    private String id;
+    private String name;
+    private double price;
+}
@@ -0,0 +1,48 @@
+package com.viettel.vtskit.elasticsearch.benchmark;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class WideDocument {
+    private String id;
+    private String name;
+    private String description;
+    private String brand;
+    private String category;
+    private String color;
+    private String sku;
+    private String barcode;
+    private String currency;
+    private String status;
+    private double price;
+    private double discount;
+    private double rating;
+    private long stock;
+    private long sold;
+    private long views;
+    private int warrantyMonths;
+    private int releaseYear;
+    private boolean available;
+    private boolean featured;
+    private List<String> tags;
+    private Dimensions dimensions;
+    private Seller seller;
+
+    @Data
+    public static class Dimensions {
+        private double width;
+        private double height;
+        private double depth;
+        private double weight;
+    }
+
+    @Data
+    public static class Seller {
+        private String id;
+        private String name;
+        private String city;
+        private double rating;
+    }
+}
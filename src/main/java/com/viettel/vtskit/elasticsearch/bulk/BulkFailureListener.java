@@ -0,0 +1,14 @@
+package com.viettel.vtskit.elasticsearch.bulk;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+
+/**
+ * Receives documents that could not be written by {@link BulkIndexer}, after rejected items have been retried.
+ */
+public interface BulkFailureListener {
+
+    void onItemFailure(BulkItemResponse item);
+
+    void onBulkFailure(BulkRequest request, Throwable failure);
+}
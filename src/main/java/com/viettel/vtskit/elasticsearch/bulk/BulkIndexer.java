@@ -0,0 +1,162 @@
+package com.viettel.vtskit.elasticsearch.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.search.SearchResultCache;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.core.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers index and delete operations and sends them as bulk requests, flushing by document count, byte size
+ * or time interval. At most {@code concurrentRequests} bulk requests are in flight; once that limit is reached,
+ * {@link #index} blocks the caller until a request completes. Items rejected with 429 are retried with
+ * exponential backoff before being reported to the {@link BulkFailureListener}.
+ */
+public class BulkIndexer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIndexer.class);
+
+    private final ObjectMapper objectMapper;
+    private final BulkFailureListener failureListener;
+    private final SearchResultCache searchResultCache;
+    private final BulkProcessor processor;
+
+    private final LongAdder indexedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public BulkIndexer(RestHighLevelClient client, ObjectMapper objectMapper, CustomElasticsearchProperties.Bulk bulk,
+                       BulkFailureListener failureListener, SearchResultCache searchResultCache) {
+        this.objectMapper = objectMapper;
+        this.failureListener = failureListener;
+        this.searchResultCache = searchResultCache;
+        this.processor = BulkProcessor.builder(
+                        (request, listener) -> client.bulkAsync(request, RequestOptions.DEFAULT, listener),
+                        new Listener(),
+                        "vts-bulk-indexer")
+                .setBulkActions(bulk.getActions())
+                .setBulkSize(new ByteSizeValue(bulk.getSize().toBytes()))
+                .setFlushInterval(toTimeValue(bulk.getFlushInterval()))
+                .setConcurrentRequests(bulk.getConcurrentRequests())
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(toTimeValue(bulk.getBackoffInitialDelay()), bulk.getMaxRetries()))
+                .build();
+    }
+
+    public <T> void index(String index, String id, T document) {
+        final byte[] source;
+        try {
+            source = objectMapper.writeValueAsBytes(document);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+
+        processor.add(new IndexRequest(index).id(id).source(source, XContentType.JSON));
+    }
+
+    public <T> void index(String index, T document) {
+        index(index, null, document);
+    }
+
+    public void delete(String index, String id) {
+        processor.add(new DeleteRequest(index, id));
+    }
+
+    public void flush() {
+        processor.flush();
+    }
+
+    public long getIndexedCount() {
+        return indexedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public boolean awaitClose(Duration timeout) throws InterruptedException {
+        return processor.awaitClose(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (!awaitClose(Duration.ofSeconds(30))) {
+            LOG.warn("Bulk indexer closed before all pending requests completed");
+        }
+    }
+
+    private static TimeValue toTimeValue(Duration duration) {
+        return duration == null ? null : TimeValue.timeValueMillis(duration.toMillis());
+    }
+
+    private void invalidateCache(BulkRequest request, BulkResponse response) {
+        if (searchResultCache == null) {
+            return;
+        }
+
+        final Set<String> indices = new HashSet<>();
+        for (DocWriteRequest<?> item : request.requests()) {
+            indices.add(item.index());
+        }
+        if (response != null) {
+            // concrete indices behind the aliases that were written to
+            for (BulkItemResponse item : response.getItems()) {
+                indices.add(item.getIndex());
+            }
+        }
+        indices.forEach(searchResultCache::invalidate);
+    }
+
+    private class Listener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            invalidateCache(request, response);
+            for (BulkItemResponse item : response.getItems()) {
+                if (!item.isFailed()) {
+                    indexedCount.increment();
+                    continue;
+                }
+
+                failedCount.increment();
+                if (failureListener != null) {
+                    failureListener.onItemFailure(item);
+                } else {
+                    LOG.error("Failed to write document {} to {}: {}", item.getId(), item.getIndex(), item.getFailureMessage());
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            invalidateCache(request, null);
+            failedCount.add(request.numberOfActions());
+            if (failureListener != null) {
+                failureListener.onBulkFailure(request, failure);
+            } else {
+                LOG.error(failure.getMessage(), failure);
+            }
+        }
+    }
+}
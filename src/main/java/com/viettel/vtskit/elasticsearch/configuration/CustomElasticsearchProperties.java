@@ -1,8 +1,214 @@
 package com.viettel.vtskit.elasticsearch.configuration;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Data
 public class CustomElasticsearchProperties extends ElasticsearchProperties {
+    private Connection connection = new Connection();
+    private Async async = new Async();
+    private Batch batch = new Batch();
+    private Scroll scroll = new Scroll();
+    private Cache cache = new Cache();
+    private Bulk bulk = new Bulk();
+    private QueryGuard queryGuard = new QueryGuard();
+    private Hedge hedge = new Hedge();
+    private IndexResolver indexResolver = new IndexResolver();
+    private Bulkhead bulkhead = new Bulkhead();
+    private Autocomplete autocomplete = new Autocomplete();
+    private Federation federation = new Federation();
+    private Template template = new Template();
+
+    @Data
+    public static class Connection {
+        private int maxConnTotal = 100;
+        private int maxConnPerRoute = 30;
+        private int ioThreadCount = 0;
+        private Duration keepAlive;
+        private boolean compression = false;
+        private NodeSelection nodeSelection = NodeSelection.ANY;
+        private Sniffer sniffer = new Sniffer();
+    }
+
+    public enum NodeSelection {
+        ANY,
+        SKIP_DEDICATED_MASTERS
+    }
+
+    @Data
+    public static class Sniffer {
+        private boolean enabled = false;
+        private Duration interval = Duration.ofMinutes(5);
+        private Duration delayAfterFailure = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Async {
+        private int corePoolSize = Runtime.getRuntime().availableProcessors();
+        private int maxPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int queueCapacity = 10000;
+        private Duration timeout;
+    }
+
+    @Data
+    public static class Batch {
+        private boolean enabled = false;
+        private int maxSize = 32;
+        private Duration window = Duration.ofNanos(500_000);
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class Scroll {
+        private int batchSize = 1000;
+        private Duration keepAlive = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = false;
+        private DataSize maximumSize = DataSize.ofMegabytes(64);
+        private Duration defaultTtl = Duration.ofSeconds(5);
+        private Map<String, Duration> ttl = new HashMap<>();
+    }
+
+    @Data
+    public static class Bulk {
+        private boolean enabled = false;
+        private int actions = 1000;
+        private DataSize size = DataSize.ofMegabytes(5);
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private int concurrentRequests = 2;
+        private Duration backoffInitialDelay = Duration.ofMillis(100);
+        private int maxRetries = 3;
+    }
+
+    @Data
+    public static class QueryGuard {
+        private boolean enabled = false;
+        private QueryGuardPolicy policy = QueryGuardPolicy.REJECT;
+        private boolean rewrite = true;
+        private int minPrefixLength = 2;
+        private String wildcardSubfield;
+        private int capTerms = 100;
+        private int maxDeterminizedStates = 2000;
+    }
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        private int windowSize = 1000;
+        private int minSamples = 100;
+        private Duration minDelay = Duration.ofMillis(5);
+        private Duration maxDelay = Duration.ofSeconds(1);
+        private Duration deadline;
+        private Duration deadlineGrace = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class IndexResolver {
+        private boolean enabled = false;
+        private String datePattern = "yyyy.MM.dd";
+        private ZoneId zone = ZoneOffset.UTC;
+        private Duration refreshInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Bulkhead {
+        private boolean enabled = false;
+        private Duration stateExpiry = Duration.ofMinutes(10);
+        private Limiter limiter = new Limiter();
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    }
+
+    @Data
+    public static class Limiter {
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private Duration latencyThreshold = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+        private double slowCallRateThreshold = 1.0;
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenProbes = 5;
+    }
+
+    @Data
+    public static class Autocomplete {
+        private boolean enabled = false;
+        private AutocompleteMode mode = AutocompleteMode.COMPLETION;
+        private int size = 10;
+        private boolean skipDuplicates = true;
+        private int maxCachedPrefixLength = 3;
+        private boolean singleInput = false;
+        private int prefetchSize = 50;
+        private long cacheSize = 10000;
+        private Duration cacheTtl = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Federation {
+        private boolean enabled = false;
+        private boolean includeLocal = true;
+        private String localName = "local";
+        private Duration deadline = Duration.ofSeconds(2);
+        private Duration timeoutMargin = Duration.ofMillis(100);
+        private Map<String, FederationTarget> targets = new LinkedHashMap<>();
+    }
+
+    /**
+     * {@code toString} calls the {@link ElasticsearchProperties} one, which prints no credentials.
+     */
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    @ToString(callSuper = true)
+    public static class FederationTarget extends ElasticsearchProperties {
+        private String index;
+        private Connection connection = new Connection();
+    }
+
+    @Data
+    public static class Template {
+        private boolean enabled = false;
+        private TemplateMode mode = TemplateMode.STORED;
+        private String idPrefix = "vtskit-";
+        private long cacheSize = 1000;
+    }
+
+    public enum TemplateMode {
+        STORED,
+        CLIENT
+    }
+
+    public enum AutocompleteMode {
+        COMPLETION,
+        SEARCH_AS_YOU_TYPE
+    }
+
+    public enum QueryGuardPolicy {
+        ALLOW,
+        REJECT,
+        CAP
+    }
 }
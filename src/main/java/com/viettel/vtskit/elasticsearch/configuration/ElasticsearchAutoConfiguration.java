@@ -1,22 +1,70 @@
 package com.viettel.vtskit.elasticsearch.configuration;
 
+import com.viettel.vtskit.elasticsearch.bulk.BulkFailureListener;
+import com.viettel.vtskit.elasticsearch.bulk.BulkIndexer;
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.mapper.JacksonDocumentMapper;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.resilience.SearchBulkhead;
+import com.viettel.vtskit.elasticsearch.search.AutocompleteService;
 import com.viettel.vtskit.elasticsearch.search.ElasticsearchService;
+import com.viettel.vtskit.elasticsearch.search.FederatedSearchService;
+import com.viettel.vtskit.elasticsearch.search.HedgedSearcher;
+import com.viettel.vtskit.elasticsearch.search.IndexResolver;
+import com.viettel.vtskit.elasticsearch.search.QueryCostGuard;
+import com.viettel.vtskit.elasticsearch.search.SearchBatcher;
+import com.viettel.vtskit.elasticsearch.search.SearchResultCache;
+import com.viettel.vtskit.elasticsearch.search.SearchTemplates;
+import com.viettel.vtskit.elasticsearch.search.TimeBasedIndexResolver;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeader;
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.NodeSelector;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.data.elasticsearch.client.ClientConfiguration;
-import org.springframework.data.elasticsearch.client.RestClients;
 import org.springframework.data.elasticsearch.config.AbstractElasticsearchConfiguration;
-import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 @Configuration
 public class ElasticsearchAutoConfiguration extends AbstractElasticsearchConfiguration {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchAutoConfiguration.class);
+    private static final int DEFAULT_PORT = 9200;
+
     private final ElasticsearchProperties elasticsearchProperties;
+    private final SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
 
     @Autowired
     public ElasticsearchAutoConfiguration(ElasticsearchProperties elasticsearchProperties) {
@@ -37,23 +85,203 @@ public class ElasticsearchAutoConfiguration extends AbstractElasticsearchConfigu
         return new ElasticsearchService();
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    DocumentMapper documentMapper() {
+        return new JacksonDocumentMapper();
+    }
+
+    @Bean(name = AppConstants.SEARCH_EXECUTOR_BEAN_NAME)
+    @ConditionalOnMissingBean(name = AppConstants.SEARCH_EXECUTOR_BEAN_NAME)
+    ThreadPoolTaskExecutor elasticsearchSearchExecutor() {
+        CustomElasticsearchProperties.Async async = elasticsearchProperties().getAsync();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(async.getCorePoolSize());
+        executor.setMaxPoolSize(async.getMaxPoolSize());
+        executor.setQueueCapacity(async.getQueueCapacity());
+        executor.setThreadNamePrefix(AppConstants.SEARCH_EXECUTOR_THREAD_PREFIX);
+        executor.setDaemon(true);
+        return executor;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.batch", name = "enabled", havingValue = "true")
+    SearchBatcher searchBatcher() {
+        return new SearchBatcher(elasticsearchClient(), elasticsearchProperties().getBatch());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.cache", name = "enabled", havingValue = "true")
+    SearchResultCache searchResultCache() {
+        return new SearchResultCache(elasticsearchProperties().getCache());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.hedge", name = "enabled", havingValue = "true")
+    HedgedSearcher hedgedSearcher() {
+        return new HedgedSearcher(elasticsearchClient(), elasticsearchProperties().getHedge());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.bulkhead", name = "enabled", havingValue = "true")
+    SearchBulkhead searchBulkhead() {
+        return new SearchBulkhead(elasticsearchProperties().getBulkhead());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.autocomplete", name = "enabled", havingValue = "true")
+    AutocompleteService autocompleteService(DocumentMapper documentMapper,
+                                            @Qualifier(AppConstants.SEARCH_EXECUTOR_BEAN_NAME) Executor searchExecutor) {
+        return new AutocompleteService(elasticsearchClient(), elasticsearchProperties().getAutocomplete(), documentMapper, searchExecutor);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.template", name = "enabled", havingValue = "true")
+    SearchTemplates searchTemplates() {
+        return new SearchTemplates(elasticsearchClient(), elasticsearchProperties().getTemplate());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.federation", name = "enabled", havingValue = "true")
+    FederatedSearchService federatedSearchService(DocumentMapper documentMapper,
+                                                  @Qualifier(AppConstants.SEARCH_EXECUTOR_BEAN_NAME) Executor searchExecutor) {
+        CustomElasticsearchProperties.Federation federation = elasticsearchProperties().getFederation();
+        Map<String, RestHighLevelClient> clients = new LinkedHashMap<>();
+        if (federation.isIncludeLocal()) {
+            clients.put(federation.getLocalName(), elasticsearchClient());
+        }
+        federation.getTargets().forEach((name, target) ->
+                clients.put(name, newClient(target, target.getConnection(), new LoggingFailureListener())));
+
+        return new FederatedSearchService(clients, federation, documentMapper, searchExecutor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(IndexResolver.class)
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.index-resolver", name = "enabled", havingValue = "true")
+    TimeBasedIndexResolver timeBasedIndexResolver() {
+        return new TimeBasedIndexResolver(elasticsearchClient(), elasticsearchProperties().getIndexResolver());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.query-guard", name = "enabled", havingValue = "true")
+    QueryCostGuard queryCostGuard(ObjectProvider<SearchMetrics> searchMetrics) {
+        return new QueryCostGuard(elasticsearchProperties().getQueryGuard(), searchMetrics.getIfAvailable(() -> SearchMetrics.NOOP));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.bulk", name = "enabled", havingValue = "true")
+    BulkIndexer bulkIndexer(DocumentMapper documentMapper,
+                            ObjectProvider<BulkFailureListener> failureListener,
+                            ObjectProvider<SearchResultCache> searchResultCache) {
+        return new BulkIndexer(
+                elasticsearchClient(),
+                documentMapper instanceof JacksonDocumentMapper
+                        ? ((JacksonDocumentMapper) documentMapper).getObjectMapper()
+                        : JacksonDocumentMapper.MAPPER,
+                elasticsearchProperties().getBulk(),
+                failureListener.getIfAvailable(),
+                searchResultCache.getIfAvailable()
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.elasticsearch.connection.sniffer", name = "enabled", havingValue = "true")
+    Sniffer elasticsearchSniffer() {
+        CustomElasticsearchProperties.Sniffer properties = elasticsearchProperties().getConnection().getSniffer();
+        RestClient restClient = elasticsearchClient().getLowLevelClient();
+        boolean https = restClient.getNodes().stream()
+                .anyMatch(node -> "https".equalsIgnoreCase(node.getHost().getSchemeName()));
+
+        Sniffer sniffer = Sniffer.builder(restClient)
+                .setSniffIntervalMillis((int) properties.getInterval().toMillis())
+                .setSniffAfterFailureDelayMillis((int) properties.getDelayAfterFailure().toMillis())
+                .setNodesSniffer(new ElasticsearchNodesSniffer(
+                        restClient,
+                        ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                        https ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP))
+                .build();
+        sniffOnFailureListener.setSniffer(sniffer);
+        return sniffer;
+    }
+
     @Bean
     @Override
     public RestHighLevelClient elasticsearchClient() {
+        CustomElasticsearchProperties.Connection connection = elasticsearchProperties().getConnection();
 
-        HttpHeaders compatibilityHeaders = new HttpHeaders();
-        compatibilityHeaders.add("Accept", "application/vnd.elasticsearch+json;compatible-with=7");
-        compatibilityHeaders.add("Content-Type", "application/vnd.elasticsearch+json;"
-                + "compatible-with=7");
+        return newClient(elasticsearchProperties, connection,
+                connection.getSniffer().isEnabled() ? sniffOnFailureListener : new LoggingFailureListener());
+    }
 
-        final ClientConfiguration config = ClientConfiguration.builder()
-                .connectedTo(elasticsearchProperties.getUris().get(0))
-                .withBasicAuth(elasticsearchProperties.getUsername(), elasticsearchProperties.getPassword())
-                .withDefaultHeaders(compatibilityHeaders)
-                .build();
+    private RestHighLevelClient newClient(ElasticsearchProperties target, CustomElasticsearchProperties.Connection connection,
+                                          RestClient.FailureListener failureListener) {
+        Header[] compatibilityHeaders = new Header[]{
+                new BasicHeader("Accept", "application/vnd.elasticsearch+json;compatible-with=7"),
+                new BasicHeader("Content-Type", "application/vnd.elasticsearch+json;"
+                        + "compatible-with=7")
+        };
+
+        RestClientBuilder builder = RestClient.builder(parseHosts(target.getUris()))
+                .setDefaultHeaders(compatibilityHeaders)
+                .setCompressionEnabled(connection.isCompression())
+                .setFailureListener(failureListener)
+                .setRequestConfigCallback(requestConfig -> requestConfig
+                        .setConnectTimeout(toMillis(target.getConnectionTimeout()))
+                        .setSocketTimeout(toMillis(target.getSocketTimeout())))
+                .setHttpClientConfigCallback(httpClient -> configureHttpClient(httpClient, target, connection));
+
+        if (connection.getNodeSelection() == CustomElasticsearchProperties.NodeSelection.SKIP_DEDICATED_MASTERS) {
+            builder.setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS);
+        }
+        if (StringUtils.hasText(target.getPathPrefix())) {
+            builder.setPathPrefix(target.getPathPrefix());
+        }
 
-        return RestClients.create(config).rest();
+        return new RestHighLevelClient(builder);
     }
 
+    private static HttpAsyncClientBuilder configureHttpClient(HttpAsyncClientBuilder httpClient, ElasticsearchProperties target,
+                                                             CustomElasticsearchProperties.Connection connection) {
+        httpClient.setMaxConnTotal(connection.getMaxConnTotal())
+                .setMaxConnPerRoute(connection.getMaxConnPerRoute());
+
+        if (connection.getIoThreadCount() > 0) {
+            httpClient.setDefaultIOReactorConfig(IOReactorConfig.custom()
+                    .setIoThreadCount(connection.getIoThreadCount())
+                    .build());
+        }
+        if (connection.getKeepAlive() != null) {
+            long keepAlive = connection.getKeepAlive().toMillis();
+            httpClient.setKeepAliveStrategy((response, context) -> keepAlive);
+        }
+        if (target.getUsername() != null) {
+            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(AuthScope.ANY,
+                    new UsernamePasswordCredentials(target.getUsername(), target.getPassword()));
+            httpClient.setDefaultCredentialsProvider(credentialsProvider);
+        }
+
+        return httpClient;
+    }
 
+    private static HttpHost[] parseHosts(List<String> uris) {
+        return uris.stream()
+                .map(String::trim)
+                .map(uri -> URI.create(uri.contains("://") ? uri : "http://" + uri))
+                .map(uri -> new HttpHost(uri.getHost(), uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort(), uri.getScheme()))
+                .toArray(HttpHost[]::new);
+    }
+
+    private static int toMillis(Duration duration) {
+        return duration == null ? -1 : (int) duration.toMillis();
+    }
+
+    private static class LoggingFailureListener extends RestClient.FailureListener {
+
+        @Override
+        public void onFailure(Node node) {
+            LOG.warn("Elasticsearch node {} failed and is marked dead until its retry timeout expires", node.getHost());
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package com.viettel.vtskit.elasticsearch.configuration;
+
+import com.viettel.vtskit.elasticsearch.bulk.BulkIndexer;
+import com.viettel.vtskit.elasticsearch.metrics.ElasticsearchComponentMetrics;
+import com.viettel.vtskit.elasticsearch.metrics.MicrometerSearchMetrics;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.resilience.SearchBulkhead;
+import com.viettel.vtskit.elasticsearch.search.AutocompleteService;
+import com.viettel.vtskit.elasticsearch.search.HedgedSearcher;
+import com.viettel.vtskit.elasticsearch.search.SearchBatcher;
+import com.viettel.vtskit.elasticsearch.search.SearchResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(MeterRegistry.class)
+@AutoConfigureAfter(name = {
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"
+})
+public class ElasticsearchMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    SearchMetrics searchMetrics(MeterRegistry meterRegistry) {
+        return new MicrometerSearchMetrics(meterRegistry);
+    }
+
+    @Bean
+    ElasticsearchComponentMetrics elasticsearchComponentMetrics(ObjectProvider<SearchBatcher> searchBatcher,
+                                                                ObjectProvider<SearchResultCache> searchResultCache,
+                                                                ObjectProvider<BulkIndexer> bulkIndexer,
+                                                                ObjectProvider<HedgedSearcher> hedgedSearcher,
+                                                                ObjectProvider<SearchBulkhead> searchBulkhead,
+                                                                ObjectProvider<AutocompleteService> autocompleteService) {
+        return new ElasticsearchComponentMetrics(
+                searchBatcher.getIfAvailable(),
+                searchResultCache.getIfAvailable(),
+                bulkIndexer.getIfAvailable(),
+                hedgedSearcher.getIfAvailable(),
+                searchBulkhead.getIfAvailable(),
+                autocompleteService.getIfAvailable()
+        );
+    }
+}
@@ -0,0 +1,19 @@
+package com.viettel.vtskit.elasticsearch.configuration;
+
+import com.viettel.vtskit.elasticsearch.search.ReactiveElasticsearchService;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+
+@Configuration
+@ConditionalOnClass(Flux.class)
+@AutoConfigureAfter(ElasticsearchAutoConfiguration.class)
+public class ElasticsearchReactiveAutoConfiguration {
+
+    @Bean
+    ReactiveElasticsearchService reactiveElasticsearchService() {
+        return new ReactiveElasticsearchService();
+    }
+}
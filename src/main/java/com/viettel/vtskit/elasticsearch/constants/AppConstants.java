@@ -2,4 +2,11 @@ package com.viettel.vtskit.elasticsearch.constants;
 
 public class AppConstants {
     public static String STRING_IS_NOT_A_REGEX = "String is not a regex";
+    public static final String SEARCH_EXECUTOR_BEAN_NAME = "elasticsearchSearchExecutor";
+    public static final String SEARCH_EXECUTOR_THREAD_PREFIX = "es-search-";
+    public static final String AUTOCOMPLETE_SUGGESTION_NAME = "autocomplete";
+    public static final String SEARCH_TIMED_OUT = "Search timed out after %d ms";
+    public static final String CONCURRENCY_LIMIT_EXCEEDED = "Too many concurrent searches on %s (limit %d)";
+    public static final String CIRCUIT_BREAKER_OPEN = "Circuit breaker for %s is open";
+    public static final String PATTERN_IS_TOO_EXPENSIVE = "Pattern [%s] has no literal prefix and is too expensive to search";
 }
@@ -5,4 +5,7 @@ public class PageConstants {
     public static final int page = 0;
     public static final String PAGE_SIZE_MUST_BE_LESS_THAN_OR_BY_1000 = "page size must be less than or by 1000";
     public static final String TEXT_SEARCH_NOT_MUST_BE_NULL_OR_CONTAINS_SPACES = "Text search not be null or contains spaces";
+    public static final String BATCH_SIZE_MUST_BE_BETWEEN_1_AND_10000 = "batch size must be between 1 and 10000";
+    public static final String PREFIX_MUST_NOT_BE_EMPTY = "Prefix and field must not be empty";
+    public static final String CURSOR_IS_INVALID = "Cursor is invalid or has expired";
 }
@@ -0,0 +1,8 @@
+package com.viettel.vtskit.elasticsearch.exception;
+
+public class CircuitBreakerOpenException extends SearchRejectedException {
+
+    public CircuitBreakerOpenException(String message) {
+        super(503, message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.viettel.vtskit.elasticsearch.exception;
+
+public class ConcurrencyLimitExceededException extends SearchRejectedException {
+
+    public ConcurrencyLimitExceededException(String message) {
+        super(429, message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.viettel.vtskit.elasticsearch.exception;
+
+/**
+ * Thrown without contacting the cluster when a search is refused to protect it.
+ */
+public class SearchRejectedException extends RuntimeException {
+    private final int errorCode;
+
+    public SearchRejectedException(int errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,36 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+
+/**
+ * Turns the raw {@code _source} bytes of a hit into a response DTO. Register a bean of this type to replace the
+ * default Jackson based mapper, e.g. with a generated one.
+ */
+public interface DocumentMapper {
+
+    <T> T read(BytesReference source, Class<T> responseDTO) throws IOException;
+
+    /**
+     * The {@code ObjectMapper} whose property names match the stored field names, used to compute the
+     * {@code _source} paths to fetch. {@code null} fetches the whole {@code _source}.
+     */
+    default ObjectMapper getObjectMapper() {
+        return null;
+    }
+
+    /**
+     * Reads a hit from its {@code _source}, or from its fetched fields for a {@link FetchFields} response DTO
+     * searched without {@code _source}.
+     */
+    default <T> T read(SearchHit hit, Class<T> responseDTO) throws IOException {
+        if (hit.getSourceRef() == null && FieldValueMapper.isFieldFetch(responseDTO)) {
+            return FieldValueMapper.read(hit.getFields(), responseDTO);
+        }
+
+        return read(hit.getSourceRef(), responseDTO);
+    }
+}
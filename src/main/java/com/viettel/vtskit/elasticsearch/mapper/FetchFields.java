@@ -0,0 +1,27 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Reads a response DTO from {@code docvalue_fields} (or stored fields) instead of {@code _source}. Every property
+ * must be a scalar: a primitive or its wrapper, {@code String}, an enum, {@code BigDecimal}, {@code Instant} or
+ * {@code Date}, named after a field that has doc values (keyword, numeric, date, boolean), or is stored.
+ *
+ * @see FieldValueMapper
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface FetchFields {
+
+    From value() default From.DOC_VALUES;
+
+    enum From {
+        DOC_VALUES,
+        STORED_FIELDS
+    }
+}
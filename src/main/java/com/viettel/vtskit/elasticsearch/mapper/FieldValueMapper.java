@@ -0,0 +1,334 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedConstructor;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.elasticsearch.common.document.DocumentField;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the fetched fields of a hit into a {@link FetchFields} response DTO through {@link MethodHandle}s
+ * resolved once per class: no {@code _source} is parsed and no reflection happens per hit. Primitive properties
+ * are set through handles typed with the primitive, so a value is never boxed again on its way into the DTO.
+ * <p>
+ * Property names follow Jackson ({@code @JsonProperty} renames, naming strategies, {@code @JsonIgnore}) like
+ * {@link SourceProjection}, with the {@code ObjectMapper} of the {@link DocumentMapper} in use, or the default one
+ * when that mapper is not Jackson based. Fields missing from a hit leave the property at its default; of a
+ * multi-valued field, the first value is used.
+ */
+public final class FieldValueMapper {
+    public static final String DATE_FORMAT = "epoch_millis";
+
+    private static volatile FieldValueMapper current = new FieldValueMapper(JacksonDocumentMapper.MAPPER);
+
+    private final ObjectMapper objectMapper;
+    private final ClassValue<Plan> plans = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            final FetchFields fetchFields = type.getAnnotation(FetchFields.class);
+            return fetchFields == null ? null : compute(type, fetchFields.value());
+        }
+    };
+
+    FieldValueMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper == null ? JacksonDocumentMapper.MAPPER : objectMapper;
+    }
+
+    /**
+     * Names the fields with the {@code ObjectMapper} of {@code documentMapper} from now on.
+     */
+    public static void use(DocumentMapper documentMapper) {
+        final ObjectMapper objectMapper = documentMapper.getObjectMapper() == null
+                ? JacksonDocumentMapper.MAPPER
+                : documentMapper.getObjectMapper();
+        if (current.objectMapper != objectMapper) {
+            current = new FieldValueMapper(objectMapper);
+        }
+    }
+
+    public static boolean isFieldFetch(Class<?> responseDTO) {
+        return responseDTO != null && current.plans.get(responseDTO) != null;
+    }
+
+    public static FetchFields.From from(Class<?> responseDTO) {
+        return current.plans.get(responseDTO).from;
+    }
+
+    /**
+     * Field names to fetch. The returned array is shared and must not be modified.
+     */
+    public static String[] fields(Class<?> responseDTO) {
+        return current.plans.get(responseDTO).fields;
+    }
+
+    /**
+     * {@code docvalue_fields} format of each of {@link #fields}: {@link #DATE_FORMAT} for dates, {@code null}
+     * otherwise. The returned array is shared and must not be modified.
+     */
+    public static String[] formats(Class<?> responseDTO) {
+        return current.plans.get(responseDTO).formats;
+    }
+
+    public static <T> T read(Map<String, DocumentField> fields, Class<T> responseDTO) {
+        return current.readFields(fields, responseDTO);
+    }
+
+    <T> T readFields(Map<String, DocumentField> fields, Class<T> responseDTO) {
+        final Plan plan = plans.get(responseDTO);
+        try {
+            final Object bean = plan.constructor.invokeExact();
+            for (Setter setter : plan.setters) {
+                final DocumentField field = fields.get(setter.field);
+                if (field != null && !field.getValues().isEmpty() && field.getValues().get(0) != null) {
+                    setter.set(bean, field.getValues().get(0));
+                }
+            }
+            return responseDTO.cast(bean);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to map fields to " + responseDTO.getName(), e);
+        }
+    }
+
+    String[] fieldsOf(Class<?> responseDTO) {
+        return plans.get(responseDTO).fields;
+    }
+
+    private Plan compute(Class<?> type, FetchFields.From from) {
+        final BeanDescription description = objectMapper.getDeserializationConfig()
+                .introspect(objectMapper.constructType(type));
+        final AnnotatedConstructor constructor = description.findDefaultConstructor();
+        if (constructor == null) {
+            throw new IllegalArgumentException(type.getName() + " needs a no-argument constructor to be read from fields");
+        }
+
+        final List<Setter> setters = new ArrayList<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (!property.couldDeserialize()) {
+                continue;
+            }
+            setters.add(setter(type, property));
+        }
+
+        final String[] fields = new String[setters.size()];
+        final String[] formats = new String[setters.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = setters.get(i).field;
+            formats[i] = setters.get(i).date ? DATE_FORMAT : null;
+        }
+
+        return new Plan(from, fields, formats, handle(constructor.getAnnotated()), setters.toArray(new Setter[0]));
+    }
+
+    private static Setter setter(Class<?> type, BeanPropertyDefinition property) {
+        final AnnotatedMember mutator = property.getMutator();
+        final Class<?> valueType = property.getRawPrimaryType();
+        final MethodHandle handle;
+        if (mutator != null && mutator.getMember() instanceof Method) {
+            handle = handle((Method) mutator.getMember());
+        } else if (mutator != null && mutator.getMember() instanceof Field) {
+            handle = setterHandle((Field) mutator.getMember());
+        } else {
+            throw new IllegalArgumentException(type.getName() + "." + property.getName() + " has no setter");
+        }
+
+        final String field = property.getName();
+        if (valueType == int.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, int.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()));
+                }
+            };
+        }
+        if (valueType == long.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, long.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()));
+                }
+            };
+        }
+        if (valueType == double.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, double.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()));
+                }
+            };
+        }
+        if (valueType == float.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, float.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString()));
+                }
+            };
+        }
+        if (valueType == short.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, short.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).shortValue() : Short.parseShort(value.toString()));
+                }
+            };
+        }
+        if (valueType == byte.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, byte.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Number ? ((Number) value).byteValue() : Byte.parseByte(value.toString()));
+                }
+            };
+        }
+        if (valueType == boolean.class) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+            return new Setter(field, false) {
+                @Override
+                void set(Object bean, Object value) throws Throwable {
+                    exact.invokeExact(bean, value instanceof Boolean ? (boolean) (Boolean) value : Boolean.parseBoolean(value.toString()));
+                }
+            };
+        }
+
+        final ObjectConverter converter = converter(type, property.getName(), valueType);
+        final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return new Setter(field, valueType == Instant.class || valueType == Date.class) {
+            @Override
+            void set(Object bean, Object value) throws Throwable {
+                exact.invokeExact(bean, converter.convert(value));
+            }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ObjectConverter converter(Class<?> type, String property, Class<?> valueType) {
+        if (valueType == String.class) {
+            return Object::toString;
+        }
+        if (valueType == Integer.class) {
+            return value -> value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+        }
+        if (valueType == Long.class) {
+            return value -> value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString());
+        }
+        if (valueType == Double.class) {
+            return value -> value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+        }
+        if (valueType == Float.class) {
+            return value -> value instanceof Number ? ((Number) value).floatValue() : Float.valueOf(value.toString());
+        }
+        if (valueType == Short.class) {
+            return value -> value instanceof Number ? ((Number) value).shortValue() : Short.valueOf(value.toString());
+        }
+        if (valueType == Byte.class) {
+            return value -> value instanceof Number ? ((Number) value).byteValue() : Byte.valueOf(value.toString());
+        }
+        if (valueType == Boolean.class) {
+            return value -> value instanceof Boolean ? value : Boolean.valueOf(value.toString());
+        }
+        if (valueType == BigDecimal.class) {
+            return value -> new BigDecimal(value.toString());
+        }
+        if (valueType == Instant.class) {
+            return value -> Instant.ofEpochMilli(epochMillis(value));
+        }
+        if (valueType == Date.class) {
+            return value -> new Date(epochMillis(value));
+        }
+        if (valueType.isEnum()) {
+            return value -> Enum.valueOf((Class<Enum>) valueType, value.toString());
+        }
+
+        throw new IllegalArgumentException(type.getName() + "." + property + " of type " + valueType.getName()
+                + " cannot be read from fields");
+    }
+
+    private static long epochMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+
+        // epoch_millis comes back as a string, with a fraction for date_nanos fields. Stored fields ignore the
+        // format and return ISO 8601
+        final String text = value.toString();
+        return text.indexOf('T') < 0 ? new BigDecimal(text).longValue() : Instant.parse(text).toEpochMilli();
+    }
+
+    private static MethodHandle handle(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+            if (member instanceof Method) {
+                return MethodHandles.lookup().unreflect((Method) member);
+            }
+            return MethodHandles.lookup().unreflectConstructor((Constructor<?>) member)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access " + member, e);
+        }
+    }
+
+    private static MethodHandle setterHandle(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access " + field, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ObjectConverter {
+        Object convert(Object value);
+    }
+
+    private abstract static class Setter {
+        private final String field;
+        private final boolean date;
+
+        private Setter(String field, boolean date) {
+            this.field = field;
+            this.date = date;
+        }
+
+        abstract void set(Object bean, Object value) throws Throwable;
+    }
+
+    private static final class Plan {
+        private final FetchFields.From from;
+        private final String[] fields;
+        private final String[] formats;
+        private final MethodHandle constructor;
+        private final Setter[] setters;
+
+        private Plan(FetchFields.From from, String[] fields, String[] formats, MethodHandle constructor, Setter[] setters) {
+            this.from = from;
+            this.fields = fields;
+            this.formats = formats;
+            this.constructor = constructor;
+            this.setters = setters;
+        }
+    }
+}
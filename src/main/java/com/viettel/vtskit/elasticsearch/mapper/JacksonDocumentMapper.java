@@ -0,0 +1,53 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.io.IOException;
+
+/**
+ * Reads hits straight from their source bytes with an {@link ObjectReader} resolved once per response class,
+ * instead of copying every {@code _source} into a {@code String} and looking up the deserializer on each call.
+ */
+public class JacksonDocumentMapper implements DocumentMapper {
+    public static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ObjectMapper objectMapper;
+    private final ClassValue<ObjectReader> readers = new ClassValue<ObjectReader>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return objectMapper.readerFor(type);
+        }
+    };
+
+    public JacksonDocumentMapper() {
+        this(MAPPER);
+    }
+
+    public JacksonDocumentMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    @Override
+    public <T> T read(BytesReference source, Class<T> responseDTO) throws IOException {
+        if (source == null) {
+            return null;
+        }
+
+        final ObjectReader reader = readers.get(responseDTO);
+        if (source.hasArray()) {
+            final BytesRef bytes = source.toBytesRef();
+            return reader.readValue(bytes.bytes, bytes.offset, bytes.length);
+        }
+
+        return reader.readValue(source.streamInput());
+    }
+}
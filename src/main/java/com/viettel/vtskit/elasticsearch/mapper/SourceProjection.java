@@ -0,0 +1,133 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code _source} include paths of a response DTO, as Jackson sees it: inherited properties, {@code @JsonProperty}
+ * renames, naming strategies, {@code @JsonIgnore} and nested objects (as {@code a.b.c}) are all taken into
+ * account. Paths are computed once per class, with the {@code ObjectMapper} of the {@link DocumentMapper} in use.
+ * When that mapper is not Jackson based, the whole {@code _source} is fetched.
+ */
+public final class SourceProjection {
+    private static volatile SourceProjection current = new SourceProjection(JacksonDocumentMapper.MAPPER);
+
+    private final ObjectMapper objectMapper;
+    private final ClassValue<String[]> includes = new ClassValue<String[]>() {
+        @Override
+        protected String[] computeValue(Class<?> type) {
+            return compute(type);
+        }
+    };
+
+    SourceProjection(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Computes the include paths with the {@code ObjectMapper} of {@code documentMapper} from now on.
+     */
+    public static void use(DocumentMapper documentMapper) {
+        if (current.objectMapper != documentMapper.getObjectMapper()) {
+            current = new SourceProjection(documentMapper.getObjectMapper());
+        }
+    }
+
+    /**
+     * Returns the include paths of {@code responseDTO}, or {@code null} when the whole {@code _source} is needed.
+     * The returned array is shared and must not be modified.
+     */
+    public static String[] includes(Class<?> responseDTO) {
+        return current.includesOf(responseDTO);
+    }
+
+    String[] includesOf(Class<?> responseDTO) {
+        return objectMapper == null ? null : includes.get(responseDTO);
+    }
+
+    private String[] compute(Class<?> responseDTO) {
+        final JavaType type = objectMapper.constructType(responseDTO);
+        if (isLeaf(type)) {
+            return null;
+        }
+
+        final List<String> paths = new ArrayList<>();
+        if (!collect(type, "", new HashSet<>(), paths) || paths.isEmpty()) {
+            return null;
+        }
+
+        return paths.toArray(new String[0]);
+    }
+
+    /**
+     * Adds the paths of {@code type} under {@code prefix}. Returns {@code false} if the type accepts arbitrary
+     * properties, in which case no projection is possible.
+     */
+    private boolean collect(JavaType type, String prefix, Set<Class<?>> visiting, List<String> paths) {
+        final BeanDescription description = objectMapper.getDeserializationConfig().introspect(type);
+        if (description.findAnySetterAccessor() != null) {
+            return false;
+        }
+
+        visiting.add(type.getRawClass());
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (!property.couldDeserialize()) {
+                continue;
+            }
+
+            final AnnotatedMember member = property.getPrimaryMember();
+            final JsonUnwrapped unwrapped = member == null ? null : member.getAnnotation(JsonUnwrapped.class);
+            final String path = prefix + property.getName();
+            final JavaType valueType = elementType(property.getPrimaryType());
+            if (isLeaf(valueType) || visiting.contains(valueType.getRawClass())) {
+                paths.add(path);
+            } else if (unwrapped != null && unwrapped.enabled() && unwrapped.prefix().isEmpty() && unwrapped.suffix().isEmpty()) {
+                if (!collect(valueType, prefix, visiting, paths)) {
+                    return false;
+                }
+            } else {
+                final int before = paths.size();
+                if (!collect(valueType, path + ".", visiting, paths) || paths.size() == before) {
+                    paths.subList(before, paths.size()).clear();
+                    paths.add(path);
+                }
+            }
+        }
+        visiting.remove(type.getRawClass());
+
+        return true;
+    }
+
+    private static JavaType elementType(JavaType type) {
+        JavaType element = type;
+        while ((element.isCollectionLikeType() || element.isArrayType()) && element.getContentType() != null) {
+            element = element.getContentType();
+        }
+
+        return element;
+    }
+
+    private static boolean isLeaf(JavaType type) {
+        final Class<?> raw = type.getRawClass();
+        return type.isPrimitive()
+                || type.isEnumType()
+                || type.isMapLikeType()
+                || type.isJavaLangObject()
+                || raw.isInterface()
+                || Modifier.isAbstract(raw.getModifiers())
+                || JsonNode.class.isAssignableFrom(raw)
+                || raw.getName().startsWith("java.")
+                || raw.getName().startsWith("javax.");
+    }
+}
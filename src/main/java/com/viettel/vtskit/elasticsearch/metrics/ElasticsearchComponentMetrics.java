@@ -0,0 +1,117 @@
+package com.viettel.vtskit.elasticsearch.metrics;
+
+import com.viettel.vtskit.elasticsearch.bulk.BulkIndexer;
+import com.viettel.vtskit.elasticsearch.resilience.SearchBulkhead;
+import com.viettel.vtskit.elasticsearch.search.AutocompleteService;
+import com.viettel.vtskit.elasticsearch.search.HedgedSearcher;
+import com.viettel.vtskit.elasticsearch.search.SearchBatcher;
+import com.viettel.vtskit.elasticsearch.search.SearchResultCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the state of the optional batching, caching, bulk, hedging, bulkhead and autocomplete components.
+ */
+public class ElasticsearchComponentMetrics implements MeterBinder {
+    private final SearchBatcher searchBatcher;
+    private final SearchResultCache searchResultCache;
+    private final BulkIndexer bulkIndexer;
+    private final HedgedSearcher hedgedSearcher;
+    private final SearchBulkhead searchBulkhead;
+    private final AutocompleteService autocompleteService;
+
+    public ElasticsearchComponentMetrics(SearchBatcher searchBatcher, SearchResultCache searchResultCache, BulkIndexer bulkIndexer,
+                                         HedgedSearcher hedgedSearcher, SearchBulkhead searchBulkhead,
+                                         AutocompleteService autocompleteService) {
+        this.searchBatcher = searchBatcher;
+        this.searchResultCache = searchResultCache;
+        this.bulkIndexer = bulkIndexer;
+        this.hedgedSearcher = hedgedSearcher;
+        this.searchBulkhead = searchBulkhead;
+        this.autocompleteService = autocompleteService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (searchBatcher != null) {
+            Gauge.builder("elasticsearch.batch.queue.depth", searchBatcher, SearchBatcher::getQueueDepth)
+                    .description("Searches waiting to be sent in a batch")
+                    .register(registry);
+            Gauge.builder("elasticsearch.batch.size.last", searchBatcher, SearchBatcher::getLastBatchSize)
+                    .register(registry);
+            Gauge.builder("elasticsearch.batch.size.average", searchBatcher, SearchBatcher::getAverageBatchSize)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.batch.batches", searchBatcher, SearchBatcher::getBatchCount)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.batch.requests", searchBatcher, SearchBatcher::getBatchedRequestCount)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.batch.overflow", searchBatcher, SearchBatcher::getOverflowCount)
+                    .register(registry);
+        }
+        if (searchResultCache != null) {
+            Gauge.builder("elasticsearch.cache.size", searchResultCache, SearchResultCache::estimatedSize)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.cache.requests", searchResultCache, cache -> cache.stats().hitCount())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.cache.requests", searchResultCache, cache -> cache.stats().missCount())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.cache.evictions", searchResultCache, cache -> cache.stats().evictionCount())
+                    .register(registry);
+        }
+        if (bulkIndexer != null) {
+            FunctionCounter.builder("elasticsearch.bulk.documents", bulkIndexer, BulkIndexer::getIndexedCount)
+                    .tag("result", "success")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.bulk.documents", bulkIndexer, BulkIndexer::getFailedCount)
+                    .tag("result", "failure")
+                    .register(registry);
+        }
+        if (hedgedSearcher != null) {
+            FunctionCounter.builder("elasticsearch.hedge.searches", hedgedSearcher, HedgedSearcher::getSearchCount)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.hedge.requests", hedgedSearcher, HedgedSearcher::getHedgeCount)
+                    .description("Duplicate requests sent for searches slower than the configured percentile")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.hedge.wins", hedgedSearcher, HedgedSearcher::getHedgeWinCount)
+                    .description("Searches answered by the duplicate request")
+                    .register(registry);
+        }
+        if (searchBulkhead != null) {
+            FunctionCounter.builder("elasticsearch.bulkhead.rejected", searchBulkhead, SearchBulkhead::getLimitedCount)
+                    .tag("reason", "limit")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.bulkhead.rejected", searchBulkhead, SearchBulkhead::getShortCircuitedCount)
+                    .tag("reason", "circuit_open")
+                    .register(registry);
+            searchBulkhead.setStateListener((index, state) -> {
+                Gauge.builder("elasticsearch.bulkhead.limit", state, SearchBulkhead.IndexState::getLimit)
+                        .tag("index", index)
+                        .register(registry);
+                Gauge.builder("elasticsearch.bulkhead.inflight", state, SearchBulkhead.IndexState::getInFlight)
+                        .tag("index", index)
+                        .register(registry);
+                Gauge.builder("elasticsearch.circuit.state", state, SearchBulkhead.IndexState::getCircuitState)
+                        .description("0 closed, 1 half open, 2 open")
+                        .tag("index", index)
+                        .register(registry);
+            });
+        }
+        if (autocompleteService != null) {
+            Gauge.builder("elasticsearch.autocomplete.cache.size", autocompleteService, AutocompleteService::getCacheSize)
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.autocomplete.requests", autocompleteService, AutocompleteService::getLocalCount)
+                    .tag("result", "local")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.autocomplete.requests", autocompleteService, AutocompleteService::getCoalescedCount)
+                    .tag("result", "coalesced")
+                    .register(registry);
+            FunctionCounter.builder("elasticsearch.autocomplete.requests", autocompleteService, AutocompleteService::getRemoteCount)
+                    .tag("result", "remote")
+                    .register(registry);
+        }
+    }
+}
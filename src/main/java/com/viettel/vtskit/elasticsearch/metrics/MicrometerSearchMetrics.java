@@ -0,0 +1,137 @@
+package com.viettel.vtskit.elasticsearch.metrics;
+
+import com.viettel.vtskit.elasticsearch.search.SearchOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerSearchMetrics implements SearchMetrics {
+    public static final String PREFIX = "elasticsearch.search";
+
+    private final MeterRegistry registry;
+    private final Map<MeterKey, Meters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerSearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordBuild(SearchOperation operation, String index, long nanos) {
+        meters(operation, index).build.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRoundTrip(SearchOperation operation, String index, long nanos, long tookMillis) {
+        final Meters meters = meters(operation, index);
+        meters.roundTrip.record(nanos, TimeUnit.NANOSECONDS);
+        if (tookMillis >= 0) {
+            meters.took.record(tookMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void recordMapping(SearchOperation operation, String index, long nanos, int hits, long payloadBytes) {
+        final Meters meters = meters(operation, index);
+        meters.mapping.record(nanos, TimeUnit.NANOSECONDS);
+        meters.hits.record(hits);
+        meters.payload.record(payloadBytes);
+    }
+
+    @Override
+    public void recordFailure(SearchOperation operation, String index, Throwable failure) {
+        Counter.builder(PREFIX + ".failures")
+                .tags(tags(operation, index))
+                .tag("exception", failure.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    @Override
+    public void recordGuard(SearchOperation operation, String index, String action) {
+        Counter.builder(PREFIX + ".guard")
+                .description("Patterns rewritten, capped, rejected or allowed by the query cost guard")
+                .tags(tags(operation, index))
+                .tag("action", action)
+                .register(registry)
+                .increment();
+    }
+
+    private Meters meters(SearchOperation operation, String index) {
+        return meters.computeIfAbsent(new MeterKey(operation, index), key -> new Meters(registry, tags(operation, index)));
+    }
+
+    private static Tags tags(SearchOperation operation, String index) {
+        return Tags.of("type", operation.tag(), "index", index == null ? "none" : index);
+    }
+
+    private static final class Meters {
+        private final Timer build;
+        private final Timer roundTrip;
+        private final Timer took;
+        private final Timer mapping;
+        private final DistributionSummary hits;
+        private final DistributionSummary payload;
+
+        private Meters(MeterRegistry registry, Tags tags) {
+            this.build = Timer.builder(PREFIX + ".build")
+                    .description("Time spent building the search request")
+                    .tags(tags)
+                    .register(registry);
+            this.roundTrip = Timer.builder(PREFIX + ".roundtrip")
+                    .description("Time from sending the search request to receiving the response")
+                    .tags(tags)
+                    .register(registry);
+            this.took = Timer.builder(PREFIX + ".took")
+                    .description("Server-side search time reported by Elasticsearch")
+                    .tags(tags)
+                    .register(registry);
+            this.mapping = Timer.builder(PREFIX + ".mapping")
+                    .description("Time spent mapping hits to response objects")
+                    .tags(tags)
+                    .register(registry);
+            this.hits = DistributionSummary.builder(PREFIX + ".hits")
+                    .description("Number of hits returned per search")
+                    .tags(tags)
+                    .register(registry);
+            this.payload = DistributionSummary.builder(PREFIX + ".payload")
+                    .description("Size of the returned _source documents per search")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    private static final class MeterKey {
+        private final SearchOperation operation;
+        private final String index;
+
+        private MeterKey(SearchOperation operation, String index) {
+            this.operation = operation;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MeterKey)) {
+                return false;
+            }
+            MeterKey key = (MeterKey) o;
+            return operation == key.operation && Objects.equals(index, key.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, index);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.viettel.vtskit.elasticsearch.metrics;
+
+import com.viettel.vtskit.elasticsearch.search.SearchOperation;
+
+/**
+ * Receives timings and sizes of every search. All durations are in nanoseconds, except {@code took} which is the
+ * server-side time reported by Elasticsearch in milliseconds.
+ */
+public interface SearchMetrics {
+    SearchMetrics NOOP = new SearchMetrics() {
+    };
+
+    default void recordBuild(SearchOperation operation, String index, long nanos) {
+    }
+
+    default void recordRoundTrip(SearchOperation operation, String index, long nanos, long tookMillis) {
+    }
+
+    default void recordMapping(SearchOperation operation, String index, long nanos, int hits, long payloadBytes) {
+    }
+
+    default void recordFailure(SearchOperation operation, String index, Throwable failure) {
+    }
+
+    default void recordGuard(SearchOperation operation, String index, String action) {
+    }
+}
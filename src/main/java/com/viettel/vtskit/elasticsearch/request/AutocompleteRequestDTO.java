@@ -0,0 +1,13 @@
+package com.viettel.vtskit.elasticsearch.request;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import lombok.Data;
+
+@Data
+public class AutocompleteRequestDTO {
+    private String prefix;
+    private String field;
+    private Integer size;
+    private CustomElasticsearchProperties.AutocompleteMode mode;
+    private String routing;
+}
@@ -6,4 +6,7 @@ import lombok.Data;
 public class PagedRequestDTO {
     private int page = 0;
     private int size = 50;
+    private String cursor;
+    private String keepAlive = "1m";
+    private Integer trackTotalHitsUpTo;
 }
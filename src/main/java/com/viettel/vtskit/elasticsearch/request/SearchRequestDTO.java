@@ -3,6 +3,7 @@ package com.viettel.vtskit.elasticsearch.request;
 import lombok.Data;
 import org.elasticsearch.search.sort.SortOrder;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -15,4 +16,13 @@ public class SearchRequestDTO extends PagedRequestDTO {
     private List<String> fields;
     private int slop = 10;
     private int maxExpansions = 10;
+    private String timeField;
+    private Instant from;
+    private Instant to;
+    private String routing;
+    private String preference;
+
+    public boolean hasTimeRange() {
+        return timeField != null && (from != null || to != null);
+    }
 }
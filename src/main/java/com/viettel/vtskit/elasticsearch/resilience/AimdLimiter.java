@@ -0,0 +1,49 @@
+package com.viettel.vtskit.elasticsearch.resilience;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+
+/**
+ * Additive increase, multiplicative decrease concurrency limit: the limit grows by one after every successful
+ * search made while at least half of it was in use, and is multiplied by {@code backoff-ratio} after every
+ * failed or slow search.
+ */
+final class AimdLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private double limit;
+    private int inFlight;
+
+    AimdLimiter(CustomElasticsearchProperties.Limiter properties) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.backoffRatio = properties.getBackoffRatio();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, properties.getInitialLimit()));
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    synchronized void release(boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,193 @@
+package com.viettel.vtskit.elasticsearch.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.exception.CircuitBreakerOpenException;
+import com.viettel.vtskit.elasticsearch.exception.ConcurrencyLimitExceededException;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Per index concurrency limit and circuit breaker. Searches are refused with a
+ * {@link ConcurrencyLimitExceededException} when the adaptive limit of the index is reached, and with a
+ * {@link CircuitBreakerOpenException} while its circuit is open, so callers fail fast instead of piling up on a
+ * degraded cluster.
+ * <p>
+ * Only transport errors, timeouts, 429 and 5xx responses count as failures; a bad query does not.
+ */
+public class SearchBulkhead {
+    private final CustomElasticsearchProperties.Bulkhead properties;
+    private final long latencyThresholdNanos;
+    private final long slowCallNanos;
+    private final Cache<String, IndexState> states;
+    private volatile BiConsumer<String, IndexState> stateListener;
+
+    private final LongAdder limitedCount = new LongAdder();
+    private final LongAdder shortCircuitedCount = new LongAdder();
+
+    public SearchBulkhead(CustomElasticsearchProperties.Bulkhead properties) {
+        this.properties = properties;
+        this.latencyThresholdNanos = toNanos(properties.getLimiter().getLatencyThreshold());
+        this.slowCallNanos = toNanos(properties.getCircuitBreaker().getSlowCallDuration());
+        this.states = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getStateExpiry())
+                .build();
+    }
+
+    public Permit acquire(String index) {
+        final IndexState state = states.get(index, this::newState);
+        final int admission = state.circuitBreaker == null
+                ? SearchCircuitBreaker.PERMITTED
+                : state.circuitBreaker.tryAcquire(System.nanoTime());
+        if (admission == SearchCircuitBreaker.REJECTED) {
+            shortCircuitedCount.increment();
+            throw new CircuitBreakerOpenException(String.format(AppConstants.CIRCUIT_BREAKER_OPEN, index));
+        }
+        if (state.limiter != null && !state.limiter.tryAcquire()) {
+            if (admission == SearchCircuitBreaker.PROBE) {
+                state.circuitBreaker.releaseProbe();
+            }
+            limitedCount.increment();
+            throw new ConcurrencyLimitExceededException(String.format(AppConstants.CONCURRENCY_LIMIT_EXCEEDED, index, state.limiter.getLimit()));
+        }
+
+        return new Permit(state, admission == SearchCircuitBreaker.PROBE);
+    }
+
+    /**
+     * Called with every index seen from now on, e.g. to register per index gauges.
+     */
+    public void setStateListener(BiConsumer<String, IndexState> stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    public long getLimitedCount() {
+        return limitedCount.sum();
+    }
+
+    public long getShortCircuitedCount() {
+        return shortCircuitedCount.sum();
+    }
+
+    private IndexState newState(String index) {
+        final IndexState state = new IndexState(
+                properties.getLimiter().isEnabled() ? new AimdLimiter(properties.getLimiter()) : null,
+                properties.getCircuitBreaker().isEnabled() ? new SearchCircuitBreaker(properties.getCircuitBreaker()) : null
+        );
+        final BiConsumer<String, IndexState> listener = stateListener;
+        if (listener != null) {
+            listener.accept(index, state);
+        }
+
+        return state;
+    }
+
+    /**
+     * Whether {@code error} means the cluster is overloaded or unreachable, as opposed to a bad request: IO errors,
+     * timeouts, {@code 429} and {@code 5xx}. Such searches may succeed when retried.
+     */
+    public static boolean isFailure(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause == null) {
+            return false;
+        }
+        if (cause instanceof ElasticsearchException) {
+            return isFailure(((ElasticsearchException) cause).status());
+        }
+        if (cause instanceof ResponseException) {
+            return isFailure(RestStatus.fromCode(((ResponseException) cause).getResponse().getStatusLine().getStatusCode()));
+        }
+
+        return cause instanceof IOException || cause instanceof TimeoutException;
+    }
+
+    private static boolean isFailure(RestStatus status) {
+        return status == null || status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500;
+    }
+
+    private static long toNanos(Duration duration) {
+        return duration == null ? Long.MAX_VALUE : duration.toNanos();
+    }
+
+    public static final class IndexState {
+        private final AimdLimiter limiter;
+        private final SearchCircuitBreaker circuitBreaker;
+
+        private IndexState(AimdLimiter limiter, SearchCircuitBreaker circuitBreaker) {
+            this.limiter = limiter;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        public int getLimit() {
+            return limiter == null ? -1 : limiter.getLimit();
+        }
+
+        public int getInFlight() {
+            return limiter == null ? 0 : limiter.getInFlight();
+        }
+
+        /**
+         * 0 closed, 1 half open, 2 open.
+         */
+        public int getCircuitState() {
+            if (circuitBreaker == null) {
+                return 0;
+            }
+            switch (circuitBreaker.getState()) {
+                case OPEN:
+                    return 2;
+                case HALF_OPEN:
+                    return 1;
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    public final class Permit {
+        private final IndexState state;
+        private final boolean probe;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(IndexState state, boolean probe) {
+            this.state = state;
+            this.probe = probe;
+        }
+
+        /**
+         * Reports the outcome of the search; {@code error} is {@code null} on success. Only the first call counts.
+         */
+        public void release(Throwable error) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final long elapsed = now - start;
+            final boolean failure = error != null && isFailure(error);
+            if (state.limiter != null) {
+                state.limiter.release(failure || elapsed > latencyThresholdNanos);
+            }
+            if (state.circuitBreaker != null) {
+                state.circuitBreaker.onResult(probe, failure, elapsed > slowCallNanos, now);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.viettel.vtskit.elasticsearch.resilience;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+
+/**
+ * Count based circuit breaker. It opens when the failure rate or the slow call rate of the last
+ * {@code window-size} searches reaches its threshold, rejects every search for {@code open-duration}, then lets
+ * {@code half-open-probes} searches through: the circuit closes if they all succeed and opens again otherwise.
+ */
+final class SearchCircuitBreaker {
+    static final int REJECTED = 0;
+    static final int PERMITTED = 1;
+    static final int PROBE = 2;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final CustomElasticsearchProperties.CircuitBreaker properties;
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int next;
+    private int count;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    SearchCircuitBreaker(CustomElasticsearchProperties.CircuitBreaker properties) {
+        this.properties = properties;
+        this.failures = new boolean[Math.max(1, properties.getWindowSize())];
+        this.slowCalls = new boolean[failures.length];
+    }
+
+    synchronized int tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < properties.getOpenDuration().toNanos()) {
+                return REJECTED;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= properties.getHalfOpenProbes()) {
+                return REJECTED;
+            }
+            probesInFlight++;
+            return PROBE;
+        }
+
+        return PERMITTED;
+    }
+
+    synchronized void onResult(boolean probe, boolean failure, boolean slow, long now) {
+        if (probe) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            if (failure || slow) {
+                open(now);
+            } else if (++probeSuccesses >= properties.getHalfOpenProbes()) {
+                close();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (count == failures.length) {
+            failureCount -= failures[next] ? 1 : 0;
+            slowCount -= slowCalls[next] ? 1 : 0;
+        } else {
+            count++;
+        }
+        failures[next] = failure;
+        slowCalls[next] = slow;
+        failureCount += failure ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        next = (next + 1) % failures.length;
+
+        if (count >= properties.getMinimumCalls()
+                && ((double) failureCount / count >= properties.getFailureRateThreshold()
+                || (double) slowCount / count >= properties.getSlowCallRateThreshold())) {
+            open(now);
+        }
+    }
+
+    /**
+     * Gives back a probe that was acquired but never sent.
+     */
+    synchronized void releaseProbe() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        count = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a count/aggregation search. Bucket aggregations (terms, histogram, date histogram, range...) are in
+ * {@code buckets}, single value metrics (cardinality, avg, sum, min, max, value count) in {@code values}. Single
+ * value sub-aggregations of a bucket are in {@link BucketDTO#getValues()}.
+ */
+@Data
+@NoArgsConstructor
+public class AggregationResultDTO {
+    private long totalHits;
+    private boolean totalHitsExact;
+    private Map<String, List<BucketDTO>> buckets = new LinkedHashMap<>();
+    private Map<String, Double> values = new LinkedHashMap<>();
+
+    public List<BucketDTO> getBuckets(String name) {
+        return buckets.getOrDefault(name, Collections.emptyList());
+    }
+
+    public Double getValue(String name) {
+        return values.get(name);
+    }
+
+    public long getCardinality(String name) {
+        final Double value = values.get(name);
+        return value == null ? 0 : value.longValue();
+    }
+}
@@ -0,0 +1,16 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class BucketDTO {
+    private Object key;
+    private String keyAsString;
+    private long docCount;
+    private Map<String, Double> values = new LinkedHashMap<>();
+}
@@ -0,0 +1,17 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FederatedHitDTO<T> {
+    private String target;
+    private String index;
+    private String id;
+    private float score;
+    private Object[] sortValues;
+    private T source;
+}
@@ -0,0 +1,31 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class FederatedResultDTO<T> {
+    private List<FederatedHitDTO<T>> hits = Collections.emptyList();
+    private long totalHits;
+    private List<TargetStatusDTO> targets = new ArrayList<>();
+
+    /**
+     * {@code true} when any target did not fully answer, in which case {@code hits} may be missing matching
+     * documents.
+     */
+    public boolean isPartial() {
+        return targets.stream().anyMatch(target -> target.getStatus() != TargetStatusDTO.Status.OK);
+    }
+
+    public List<T> getContent() {
+        final List<T> content = new ArrayList<>(hits.size());
+        hits.forEach(hit -> content.add(hit.getSource()));
+
+        return content;
+    }
+}
@@ -0,0 +1,29 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class SearchResultDTO<T> {
+    private List<T> content = Collections.emptyList();
+    private long totalHits;
+    private long tookMillis;
+    private boolean timedOut;
+    private int totalShards;
+    private int successfulShards;
+    private int skippedShards;
+    private int failedShards;
+    private String failure;
+
+    /**
+     * {@code true} when the search failed, timed out or some shards did not answer, in which case
+     * {@code content} may be missing matching documents.
+     */
+    public boolean isPartial() {
+        return failure != null || timedOut || failedShards > 0;
+    }
+}
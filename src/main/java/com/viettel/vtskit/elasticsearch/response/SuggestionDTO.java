@@ -0,0 +1,15 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO<T> {
+    private String text;
+    private float score;
+    private String id;
+    private T source;
+}
@@ -0,0 +1,26 @@
+package com.viettel.vtskit.elasticsearch.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class TargetStatusDTO {
+    private String target;
+    private Status status;
+    private long tookMillis = -1;
+    private int returnedHits;
+    private long totalHits = -1;
+    private String failure;
+
+    public enum Status {
+        /** Every shard answered */
+        OK,
+        /** The target answered, but some shards timed out or failed */
+        PARTIAL,
+        /** No answer before the deadline */
+        TIMED_OUT,
+        /** The target could not be searched */
+        FAILED
+    }
+}
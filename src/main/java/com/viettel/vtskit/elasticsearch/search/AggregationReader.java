@@ -0,0 +1,48 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.response.BucketDTO;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flattens the parsed aggregations of a response into bucket lists and single values.
+ */
+final class AggregationReader {
+
+    private AggregationReader() {
+    }
+
+    static void read(Aggregations aggregations, Map<String, List<BucketDTO>> buckets, Map<String, Double> values) {
+        for (Aggregation aggregation : aggregations) {
+            if (aggregation instanceof MultiBucketsAggregation) {
+                buckets.put(aggregation.getName(), readBuckets((MultiBucketsAggregation) aggregation));
+            } else if (aggregation instanceof NumericMetricsAggregation.SingleValue) {
+                values.put(aggregation.getName(), ((NumericMetricsAggregation.SingleValue) aggregation).value());
+            }
+        }
+    }
+
+    private static List<BucketDTO> readBuckets(MultiBucketsAggregation aggregation) {
+        final List<BucketDTO> buckets = new ArrayList<>(aggregation.getBuckets().size());
+        for (MultiBucketsAggregation.Bucket bucket : aggregation.getBuckets()) {
+            final BucketDTO dto = new BucketDTO();
+            dto.setKey(bucket.getKey());
+            dto.setKeyAsString(bucket.getKeyAsString());
+            dto.setDocCount(bucket.getDocCount());
+            for (Aggregation subAggregation : bucket.getAggregations()) {
+                if (subAggregation instanceof NumericMetricsAggregation.SingleValue) {
+                    dto.getValues().put(subAggregation.getName(), ((NumericMetricsAggregation.SingleValue) subAggregation).value());
+                }
+            }
+            buckets.add(dto);
+        }
+
+        return buckets;
+    }
+}
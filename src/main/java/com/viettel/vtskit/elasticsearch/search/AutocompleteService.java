@@ -0,0 +1,371 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.request.AutocompleteRequestDTO;
+import com.viettel.vtskit.elasticsearch.response.SuggestionDTO;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Type-ahead suggestions from a {@code completion} field, or from a {@code search_as_you_type} field.
+ * <ul>
+ *     <li>Concurrent requests for the same prefix share a single round trip.</li>
+ *     <li>Results for prefixes of up to {@code max-cached-prefix-length} characters are fetched with
+ *     {@code prefetch-size} candidates and kept for {@code cache-ttl}. With {@code single-input}, in completion
+ *     mode, a longer prefix is answered by filtering the candidates of its longest cached prefix when the cached
+ *     list held every match, or enough candidates still match. Suggestions are ordered by weight, so the first
+ *     {@code size} survivors are the top {@code size} suggestions of the longer prefix. This only holds when
+ *     every document has a single input: an option carries the input that matched the shorter prefix only, so a
+ *     document with inputs {@code apple} and {@code apricot} cached under {@code a} as {@code apple} would be
+ *     missing from {@code apr}.</li>
+ * </ul>
+ * Prefixes are compared case-insensitively, like the default {@code simple} analyzer of completion fields.
+ * Returned lists are unmodifiable and their elements are shared between callers.
+ */
+public class AutocompleteService {
+    private static final Logger LOG = LoggerFactory.getLogger(AutocompleteService.class);
+
+    private final RestHighLevelClient client;
+    private final CustomElasticsearchProperties.Autocomplete properties;
+    private final DocumentMapper documentMapper;
+    private final Executor searchExecutor;
+    private final Cache<Key, Candidates> prefixCache;
+    private final ConcurrentMap<Key, Flight> inFlight = new ConcurrentHashMap<>();
+    private SearchMetrics searchMetrics = SearchMetrics.NOOP;
+
+    private final LongAdder localCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder remoteCount = new LongAdder();
+
+    public AutocompleteService(RestHighLevelClient client, CustomElasticsearchProperties.Autocomplete properties,
+                               DocumentMapper documentMapper, Executor searchExecutor) {
+        this.client = client;
+        this.properties = properties;
+        this.documentMapper = documentMapper;
+        this.searchExecutor = searchExecutor;
+        this.prefixCache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .build();
+    }
+
+    @Autowired(required = false)
+    public void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    public <T> List<SuggestionDTO<T>> suggest(final String index, AutocompleteRequestDTO requestDTO, Class<T> responseDTO) {
+        try {
+            return suggestAsync(index, requestDTO, responseDTO).get();
+        } catch (ValidateException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            LOG.error(e.getCause().getMessage(), e.getCause());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Completes immediately when the suggestions can be answered from the prefix cache. A failed request
+     * completes the future exceptionally, and is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<List<SuggestionDTO<T>>> suggestAsync(final String index, AutocompleteRequestDTO requestDTO, Class<T> responseDTO) {
+        final int size = requestDTO.getSize() != null ? requestDTO.getSize() : properties.getSize();
+        final CustomElasticsearchProperties.AutocompleteMode mode = requestDTO.getMode() != null ? requestDTO.getMode() : properties.getMode();
+        final Key key = new Key(index, requestDTO, mode, responseDTO);
+
+        final List<SuggestionDTO<?>> local = lookup(key, size);
+        if (local != null) {
+            localCount.increment();
+            return CompletableFuture.completedFuture((List<SuggestionDTO<T>>) (List<?>) local);
+        }
+
+        final boolean cacheable = key.prefix.length() <= properties.getMaxCachedPrefixLength();
+        final int fetchSize = cacheable ? Math.max(size, properties.getPrefetchSize()) : size;
+        final SearchRequest request = mode == CustomElasticsearchProperties.AutocompleteMode.COMPLETION
+                ? ElasticSearchBuilder.buildCompletionSuggestRequest(index, requestDTO, fetchSize, properties.isSkipDuplicates(), responseDTO)
+                : ElasticSearchBuilder.buildSearchAsYouTypeRequest(index, requestDTO, fetchSize, responseDTO);
+        final Flight flight = new Flight(key, fetchSize, cacheable);
+        final Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null && existing.fetchSize >= size) {
+            coalescedCount.increment();
+            return existing.future.thenApply(candidates -> (List<SuggestionDTO<T>>) (List<?>) candidates.first(size));
+        }
+
+        // A smaller request for the same prefix is in flight: fetch separately rather than wait for it
+        final Flight own = existing == null ? flight : new Flight(key, fetchSize, cacheable);
+        remoteCount.increment();
+        fetch(request, responseDTO, own);
+
+        return own.future.thenApply(candidates -> (List<SuggestionDTO<T>>) (List<?>) candidates.first(size));
+    }
+
+    public void invalidateCache(final String index) {
+        prefixCache.asMap().keySet().removeIf(key -> key.index.equals(index));
+    }
+
+    public long getLocalCount() {
+        return localCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getRemoteCount() {
+        return remoteCount.sum();
+    }
+
+    public long getCacheSize() {
+        return prefixCache.estimatedSize();
+    }
+
+    private List<SuggestionDTO<?>> lookup(Key key, int size) {
+        final int longest = Math.min(key.prefix.length(), properties.getMaxCachedPrefixLength());
+        final int shortest = key.mode == CustomElasticsearchProperties.AutocompleteMode.COMPLETION && properties.isSingleInput()
+                ? 1
+                : key.prefix.length();
+        for (int length = longest; length >= shortest; length--) {
+            final Candidates candidates = prefixCache.getIfPresent(key.withPrefix(key.prefix.substring(0, length)));
+            if (candidates == null) {
+                continue;
+            }
+            if (length == key.prefix.length()) {
+                if (candidates.complete || candidates.suggestions.size() >= size) {
+                    return candidates.first(size);
+                }
+                continue;
+            }
+
+            final List<SuggestionDTO<?>> narrowed = candidates.narrow(key.prefix, size);
+            if (narrowed != null) {
+                return narrowed;
+            }
+        }
+
+        return null;
+    }
+
+    private <T> void fetch(SearchRequest request, Class<T> responseDTO, Flight flight) {
+        final Key key = flight.key;
+        final long start = System.nanoTime();
+        client.searchAsync(request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                searchMetrics.recordRoundTrip(
+                        SearchOperation.AUTOCOMPLETE,
+                        key.index,
+                        System.nanoTime() - start,
+                        response.getTook() == null ? -1 : response.getTook().millis()
+                );
+                try {
+                    searchExecutor.execute(() -> {
+                        try {
+                            complete(flight, read(response, key, responseDTO, flight.fetchSize));
+                        } catch (Exception e) {
+                            fail(flight, e);
+                        }
+                    });
+                } catch (Exception e) {
+                    fail(flight, e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                searchMetrics.recordFailure(SearchOperation.AUTOCOMPLETE, key.index, e);
+                fail(flight, e);
+            }
+        });
+    }
+
+    /**
+     * Caches before completing, so that a caller woken up by the future already finds the prefix cached.
+     */
+    private void complete(Flight flight, Candidates candidates) {
+        if (flight.cacheable) {
+            prefixCache.put(flight.key, candidates);
+        }
+        inFlight.remove(flight.key, flight);
+        flight.future.complete(candidates);
+    }
+
+    private void fail(Flight flight, Throwable error) {
+        inFlight.remove(flight.key, flight);
+        flight.future.completeExceptionally(error);
+    }
+
+    private <T> Candidates read(SearchResponse response, Key key, Class<T> responseDTO, int fetchSize) throws IOException {
+        final long start = System.nanoTime();
+        final List<SuggestionDTO<?>> suggestions = new ArrayList<>();
+        long payloadBytes = 0;
+        if (key.mode == CustomElasticsearchProperties.AutocompleteMode.COMPLETION) {
+            final CompletionSuggestion suggestion = response.getSuggest() == null
+                    ? null
+                    : response.getSuggest().getSuggestion(AppConstants.AUTOCOMPLETE_SUGGESTION_NAME);
+            if (suggestion != null) {
+                for (CompletionSuggestion.Entry.Option option : suggestion.getOptions()) {
+                    final SearchHit hit = option.getHit();
+                    payloadBytes += hit == null || hit.getSourceRef() == null ? 0 : hit.getSourceRef().length();
+                    suggestions.add(new SuggestionDTO<>(
+                            option.getText().string(),
+                            option.getScore(),
+                            hit == null ? null : hit.getId(),
+                            hit == null ? null : readSource(hit.getSourceRef(), responseDTO)
+                    ));
+                }
+            }
+        } else {
+            for (SearchHit hit : response.getHits().getHits()) {
+                payloadBytes += hit.getSourceRef() == null ? 0 : hit.getSourceRef().length();
+                final Object text = hit.getSourceRef() == null ? null : XContentMapValues.extractValue(key.field, hit.getSourceAsMap());
+                suggestions.add(new SuggestionDTO<>(
+                        text == null ? null : text.toString(),
+                        hit.getScore(),
+                        hit.getId(),
+                        readSource(hit.getSourceRef(), responseDTO)
+                ));
+            }
+        }
+        searchMetrics.recordMapping(SearchOperation.AUTOCOMPLETE, key.index, System.nanoTime() - start, suggestions.size(), payloadBytes);
+
+        return new Candidates(suggestions, suggestions.size() < fetchSize);
+    }
+
+    private <T> T readSource(BytesReference source, Class<T> responseDTO) throws IOException {
+        return source == null ? null : documentMapper.read(source, responseDTO);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Flight {
+        private final Key key;
+        private final int fetchSize;
+        private final boolean cacheable;
+        private final CompletableFuture<Candidates> future = new CompletableFuture<>();
+
+        private Flight(Key key, int fetchSize, boolean cacheable) {
+            this.key = key;
+            this.fetchSize = fetchSize;
+            this.cacheable = cacheable;
+        }
+    }
+
+    private static final class Candidates {
+        private final List<SuggestionDTO<?>> suggestions;
+        private final String[] normalizedTexts;
+        /** Every suggestion of the prefix was returned, not only the top ones */
+        private final boolean complete;
+
+        private Candidates(List<SuggestionDTO<?>> suggestions, boolean complete) {
+            this.suggestions = Collections.unmodifiableList(suggestions);
+            this.normalizedTexts = suggestions.stream().map(suggestion -> normalize(suggestion.getText())).toArray(String[]::new);
+            this.complete = complete;
+        }
+
+        private List<SuggestionDTO<?>> first(int size) {
+            return suggestions.size() <= size ? suggestions : suggestions.subList(0, size);
+        }
+
+        /**
+         * The top {@code size} candidates starting with {@code prefix}, or {@code null} when a round trip is
+         * needed to know them.
+         */
+        private List<SuggestionDTO<?>> narrow(String prefix, int size) {
+            final List<SuggestionDTO<?>> narrowed = new ArrayList<>(size);
+            for (int i = 0; i < normalizedTexts.length && narrowed.size() < size; i++) {
+                if (normalizedTexts[i].startsWith(prefix)) {
+                    narrowed.add(suggestions.get(i));
+                }
+            }
+
+            return complete || narrowed.size() >= size ? Collections.unmodifiableList(narrowed) : null;
+        }
+    }
+
+    private static final class Key {
+        private final String index;
+        private final String field;
+        private final String prefix;
+        private final String routing;
+        private final CustomElasticsearchProperties.AutocompleteMode mode;
+        private final Class<?> responseDTO;
+        private final int hash;
+
+        private Key(String index, AutocompleteRequestDTO requestDTO, CustomElasticsearchProperties.AutocompleteMode mode, Class<?> responseDTO) {
+            this(index, requestDTO.getField(), normalize(requestDTO.getPrefix()), requestDTO.getRouting(), mode, responseDTO);
+        }
+
+        private Key(String index, String field, String prefix, String routing, CustomElasticsearchProperties.AutocompleteMode mode, Class<?> responseDTO) {
+            this.index = index;
+            this.field = field;
+            this.prefix = prefix;
+            this.routing = routing;
+            this.mode = mode;
+            this.responseDTO = responseDTO;
+            this.hash = Objects.hash(index, field, prefix, routing, mode, responseDTO);
+        }
+
+        private Key withPrefix(String prefix) {
+            return new Key(index, field, prefix, routing, mode, responseDTO);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && mode == key.mode
+                    && responseDTO == key.responseDTO
+                    && index.equals(key.index)
+                    && Objects.equals(field, key.field)
+                    && prefix.equals(key.prefix)
+                    && Objects.equals(routing, key.routing);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.viettel.vtskit.elasticsearch.search;
 
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
 import com.viettel.vtskit.elasticsearch.constants.PageConstants;
 import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.FetchFields;
+import com.viettel.vtskit.elasticsearch.mapper.FieldValueMapper;
+import com.viettel.vtskit.elasticsearch.mapper.SourceProjection;
+import com.viettel.vtskit.elasticsearch.request.AutocompleteRequestDTO;
 import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.index.query.*;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
 import org.springframework.util.CollectionUtils;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 public class ElasticSearchBuilder {
 
@@ -19,7 +30,7 @@ public class ElasticSearchBuilder {
         return (searchRequestDTO.getSortBy() != null);
     }
 
-    private static void validateSearchRequest(SearchRequestDTO searchRequestDTO) {
+    static void validateSearchRequest(SearchRequestDTO searchRequestDTO) {
         if (searchRequestDTO.getSize() > 1000) {
             throw new ValidateException(PageConstants.PAGE_SIZE_MUST_BE_LESS_THAN_OR_BY_1000);
         }
@@ -33,11 +44,16 @@ public class ElasticSearchBuilder {
         validateSearchRequest(searchRequestDTO);
         final int from = searchRequestDTO.getPage() <= 0 ? 0 : searchRequestDTO.getPage() * searchRequestDTO.getSize();
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
-                .fetchSource(getSource(responseDTO),null)
+        SearchSourceBuilder searchSourceBuilder = fetch(new SearchSourceBuilder(), responseDTO)
                 .from(from)
                 .size(searchRequestDTO.getSize())
-                .query(queryBuilder);
+                .query(withTimeRange(searchRequestDTO, queryBuilder));
+
+        return trackAndSort(searchSourceBuilder, searchRequestDTO);
+    }
+
+    private static SearchSourceBuilder trackAndSort(SearchSourceBuilder searchSourceBuilder, SearchRequestDTO searchRequestDTO) {
+        trackTotalHits(searchSourceBuilder, searchRequestDTO.getTrackTotalHitsUpTo());
 
         if (isSortBy(searchRequestDTO)) {
             searchSourceBuilder = searchSourceBuilder.sort(
@@ -49,26 +65,170 @@ public class ElasticSearchBuilder {
         return searchSourceBuilder;
     }
 
-    private static <T> String [] getSource(Class<T> tClass) {
-        Field[] fields = tClass.getDeclaredFields();
-        String[] sources = new String[fields.length];
-        int index = 0;
-        for (Field field : fields) {
-            sources[index] = field.getName();
-            index += 1;
+    /**
+     * Source of a {@link SearchTemplates} template for {@code operation}, without {@code from} and {@code size}.
+     * The searched text is {@code text} and the bounds of the time range are {@code timeFrom} and {@code timeTo};
+     * everything else is taken from {@code searchRequestDTO}. Returns {@code null} for operations without a template.
+     */
+    static SearchSourceBuilder buildTemplateSource(SearchOperation operation, SearchRequestDTO searchRequestDTO, Class<?> responseDTO,
+                                                   String text, String timeFrom, String timeTo) {
+        validateSearchRequest(searchRequestDTO);
+
+        final SearchRequestDTO shape = new SearchRequestDTO();
+        shape.setTextSearch(text);
+        shape.setFields(searchRequestDTO.getFields());
+        shape.setFieldsAndWeights(searchRequestDTO.getFieldsAndWeights());
+        shape.setSlop(searchRequestDTO.getSlop());
+        shape.setMaxExpansions(searchRequestDTO.getMaxExpansions());
+        final QueryBuilder queryBuilder;
+        switch (operation) {
+            case MULTI_FIELD:
+                queryBuilder = getMultiFieldQueryBuilder(shape);
+                break;
+            case FUZZY:
+                queryBuilder = getFuzzyQueriesBuilder(shape);
+                break;
+            case MATCH_PHRASE:
+                queryBuilder = getMatchPhraseQuery(shape);
+                break;
+            case MATCH_PHRASE_PREFIX:
+                queryBuilder = getMatchPhrasePrefixQuery(shape);
+                break;
+            case BOOSTING:
+                queryBuilder = getBoostingQueryBuilder(shape);
+                break;
+            default:
+                return null;
+        }
+
+        SearchSourceBuilder searchSourceBuilder = fetch(new SearchSourceBuilder(), responseDTO)
+                .query(searchRequestDTO.hasTimeRange()
+                        ? withTimeRange(searchRequestDTO.getTimeField(),
+                                searchRequestDTO.getFrom() != null ? timeFrom : null,
+                                searchRequestDTO.getTo() != null ? timeTo : null,
+                                queryBuilder)
+                        : queryBuilder);
+
+        return trackAndSort(searchSourceBuilder, searchRequestDTO);
+    }
+
+    /**
+     * Asks for the {@code _source} paths of {@code responseDTO}, or for its fields without any {@code _source}
+     * when it is annotated with {@link FetchFields}.
+     */
+    private static SearchSourceBuilder fetch(SearchSourceBuilder searchSourceBuilder, Class<?> responseDTO) {
+        if (!FieldValueMapper.isFieldFetch(responseDTO)) {
+            return searchSourceBuilder.fetchSource(SourceProjection.includes(responseDTO), null);
+        }
+
+        final String[] fields = FieldValueMapper.fields(responseDTO);
+        searchSourceBuilder.fetchSource(false);
+        if (FieldValueMapper.from(responseDTO) == FetchFields.From.STORED_FIELDS) {
+            return searchSourceBuilder.storedFields(Arrays.asList(fields));
+        }
+
+        final String[] formats = FieldValueMapper.formats(responseDTO);
+        for (int i = 0; i < fields.length; i++) {
+            searchSourceBuilder.docValueField(fields[i], formats[i]);
+        }
+        return searchSourceBuilder;
+    }
+
+    static SearchRequest newSearchRequest(String[] indexNames, SearchRequestDTO searchRequestDTO) {
+        return newSearchRequest(new SearchRequest(indexNames), searchRequestDTO);
+    }
+
+    private static SearchRequest newSearchRequest(String indexName, SearchRequestDTO searchRequestDTO) {
+        return newSearchRequest(new SearchRequest(indexName), searchRequestDTO);
+    }
+
+    private static SearchRequest newSearchRequest(SearchRequest searchRequest, SearchRequestDTO searchRequestDTO) {
+        searchRequest.routing(searchRequestDTO.getRouting());
+        if (searchRequestDTO.getPreference() != null) {
+            searchRequest.preference(searchRequestDTO.getPreference());
+        } else if (searchRequestDTO.getRouting() != null) {
+            // Same routing key, same shard copy: keeps that copy's caches warm for the tenant
+            searchRequest.preference(searchRequestDTO.getRouting());
+        }
+
+        return searchRequest;
+    }
+
+    private static QueryBuilder withTimeRange(SearchRequestDTO searchRequestDTO, QueryBuilder queryBuilder) {
+        if (!searchRequestDTO.hasTimeRange()) {
+            return queryBuilder;
+        }
+
+        return withTimeRange(
+                searchRequestDTO.getTimeField(),
+                searchRequestDTO.getFrom() != null ? searchRequestDTO.getFrom().toString() : null,
+                searchRequestDTO.getTo() != null ? searchRequestDTO.getTo().toString() : null,
+                queryBuilder
+        );
+    }
+
+    private static QueryBuilder withTimeRange(String timeField, String from, String to, QueryBuilder queryBuilder) {
+        RangeQueryBuilder range = QueryBuilders.rangeQuery(timeField);
+        if (from != null) {
+            range.gte(from);
+        }
+        if (to != null) {
+            range.lte(to);
+        }
+
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery().filter(range);
+        return queryBuilder == null ? boolQuery : boolQuery.must(queryBuilder);
+    }
+
+    /**
+     * {@code null} counts hits exactly up to the default threshold of Elasticsearch, 10 000, and stops counting
+     * past it; {@code -1} disables hit counting.
+     */
+    private static void trackTotalHits(SearchSourceBuilder searchSourceBuilder, Integer trackTotalHitsUpTo) {
+        searchSourceBuilder.trackTotalHitsUpTo(trackTotalHitsUpTo == null
+                ? SearchContext.DEFAULT_TRACK_TOTAL_HITS_UP_TO
+                : trackTotalHitsUpTo);
+    }
+
+    /**
+     * Turns a request built by any of the {@code build*SearchRequest} methods into one that only counts and
+     * aggregates: no hits, no {@code _source} and no sorting are requested. The query is left untouched.
+     */
+    public static SearchRequest buildCountRequest(SearchRequest searchRequest, Integer trackTotalHitsUpTo, AggregationBuilder... aggregations) {
+        if (searchRequest == null) {
+            return null;
+        }
+
+        SearchSourceBuilder searchSourceBuilder = searchRequest.source()
+                .from(0)
+                .size(0)
+                .fetchSource(false);
+        if (searchSourceBuilder.sorts() != null) {
+            searchSourceBuilder.sorts().clear();
+        }
+        trackTotalHits(searchSourceBuilder, trackTotalHitsUpTo == null ? Integer.valueOf(SearchContext.TRACK_TOTAL_HITS_ACCURATE) : trackTotalHitsUpTo);
+        for (AggregationBuilder aggregation : aggregations) {
+            searchSourceBuilder.aggregation(aggregation);
         }
 
-        return sources;
+        return searchRequest;
     }
 
     private static QueryBuilder getHandleQueryBuilder(BoolQueryBuilder boolQuery) {
         return QueryBuilders.boolQuery().filter(boolQuery);
     }
 
+    public static SearchRequest buildCountRequest(String indexName, BoolQueryBuilder boolQuery, Integer trackTotalHitsUpTo, AggregationBuilder... aggregations) {
+        SearchRequest searchRequest = new SearchRequest(indexName);
+        searchRequest.source(new SearchSourceBuilder().query(getHandleQueryBuilder(boolQuery)));
+
+        return buildCountRequest(searchRequest, trackTotalHitsUpTo, aggregations);
+    }
+
     public static <T> SearchRequest buildHandleSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getHandleQueryBuilder(boolQuery), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -78,6 +238,21 @@ public class ElasticSearchBuilder {
         }
     }
 
+    public static <T> SearchRequest buildStreamSearchRequest(String indexName, BoolQueryBuilder boolQuery, int batchSize, Class<T> responseDTO) {
+        if (batchSize <= 0 || batchSize > 10000) {
+            throw new ValidateException(PageConstants.BATCH_SIZE_MUST_BE_BETWEEN_1_AND_10000);
+        }
+
+        SearchSourceBuilder searchSourceBuilder = fetch(new SearchSourceBuilder(), responseDTO)
+                .size(batchSize)
+                .query(getHandleQueryBuilder(boolQuery))
+                .sort(SortBuilders.fieldSort("_doc"));
+        SearchRequest searchRequest = new SearchRequest(indexName);
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
     private static QueryBuilder getMatchPhrasePrefixQuery(SearchRequestDTO searchRequestDTO) {
 
         return searchRequestDTO.getFields().stream()
@@ -91,7 +266,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildMatchPhrasePrefixSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getMatchPhrasePrefixQuery(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -101,6 +276,68 @@ public class ElasticSearchBuilder {
         }
     }
 
+    private static void validateAutocompleteRequest(AutocompleteRequestDTO autocompleteRequestDTO, int size) {
+        if (size > 1000) {
+            throw new ValidateException(PageConstants.PAGE_SIZE_MUST_BE_LESS_THAN_OR_BY_1000);
+        }
+
+        if (autocompleteRequestDTO.getPrefix() == null || autocompleteRequestDTO.getPrefix().isEmpty()
+                || autocompleteRequestDTO.getField() == null || autocompleteRequestDTO.getField().isEmpty()) {
+            throw new ValidateException(PageConstants.PREFIX_MUST_NOT_BE_EMPTY);
+        }
+    }
+
+    /**
+     * Suggest only request for a {@code completion} field: no query is run and no hit is returned, the
+     * suggestions are read from the {@code autocomplete} suggestion of the response.
+     */
+    public static <T> SearchRequest buildCompletionSuggestRequest(String indexName, AutocompleteRequestDTO autocompleteRequestDTO, int size,
+                                                                  boolean skipDuplicates, Class<T> responseDTO) {
+        validateAutocompleteRequest(autocompleteRequestDTO, size);
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .fetchSource(SourceProjection.includes(responseDTO), null)
+                .size(0)
+                .trackTotalHits(false)
+                .suggest(new SuggestBuilder().addSuggestion(
+                        AppConstants.AUTOCOMPLETE_SUGGESTION_NAME,
+                        SuggestBuilders.completionSuggestion(autocompleteRequestDTO.getField())
+                                .prefix(autocompleteRequestDTO.getPrefix())
+                                .size(size)
+                                .skipDuplicates(skipDuplicates)));
+        SearchRequest searchRequest = new SearchRequest(indexName)
+                .routing(autocompleteRequestDTO.getRouting());
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * {@code bool_prefix} request over a {@code search_as_you_type} field and its shingle subfields. The field
+     * itself is always part of the fetched {@code _source}, it is the suggestion text.
+     */
+    public static <T> SearchRequest buildSearchAsYouTypeRequest(String indexName, AutocompleteRequestDTO autocompleteRequestDTO, int size, Class<T> responseDTO) {
+        validateAutocompleteRequest(autocompleteRequestDTO, size);
+
+        final String field = autocompleteRequestDTO.getField();
+        String[] includes = SourceProjection.includes(responseDTO);
+        if (includes != null && !Arrays.asList(includes).contains(field)) {
+            includes = Arrays.copyOf(includes, includes.length + 1);
+            includes[includes.length - 1] = field;
+        }
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .fetchSource(includes, null)
+                .size(size)
+                .trackTotalHits(false)
+                .query(QueryBuilders.multiMatchQuery(autocompleteRequestDTO.getPrefix(), field, field + "._2gram", field + "._3gram")
+                        .type(MultiMatchQueryBuilder.Type.BOOL_PREFIX));
+        SearchRequest searchRequest = new SearchRequest(indexName)
+                .routing(autocompleteRequestDTO.getRouting());
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
     private static QueryBuilder getMatchPhraseQuery(SearchRequestDTO searchRequestDTO) {
         MultiMatchQueryBuilder queryBuilder =  QueryBuilders.multiMatchQuery(searchRequestDTO.getTextSearch())
                 .type(MultiMatchQueryBuilder.Type.PHRASE)
@@ -114,7 +351,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildMatchPhraseSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getMatchPhraseQuery(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -125,9 +362,13 @@ public class ElasticSearchBuilder {
     }
 
     private static QueryBuilder getRegexpQueryBuilder(SearchRequestDTO searchRequestDTO) {
+        return getRegexpQueryBuilder(searchRequestDTO,
+                field -> QueryBuilders.regexpQuery(field, searchRequestDTO.getTextSearch()).caseInsensitive(true));
+    }
+
+    private static QueryBuilder getRegexpQueryBuilder(SearchRequestDTO searchRequestDTO, Function<String, QueryBuilder> fieldQuery) {
         BoolQueryBuilder boolQuery = new BoolQueryBuilder();
-        searchRequestDTO.getFields().forEach(
-                field -> boolQuery.should(QueryBuilders.regexpQuery(field, searchRequestDTO.getTextSearch()).caseInsensitive(true)));
+        searchRequestDTO.getFields().forEach(field -> boolQuery.should(fieldQuery.apply(field)));
 
         return QueryBuilders.boolQuery().filter(boolQuery);
     }
@@ -135,7 +376,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildRegexpSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getRegexpQueryBuilder(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -145,6 +386,19 @@ public class ElasticSearchBuilder {
         }
     }
 
+    /**
+     * Same as {@link #buildRegexpSearchRequest(String, SearchRequestDTO, Class)}, with every pattern checked by
+     * {@code guard}. Validation errors, including rejected patterns, are thrown instead of returning {@code null}.
+     */
+    public static <T> SearchRequest buildRegexpSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO, QueryCostGuard guard) {
+        QueryBuilder queryBuilder = getRegexpQueryBuilder(searchRequestDTO,
+                field -> guard.regexp(indexName, field, searchRequestDTO.getTextSearch()));
+        SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
+        searchRequest.source(searchSourceBuilder(searchRequestDTO, queryBuilder, responseDTO));
+
+        return searchRequest;
+    }
+
     private static QueryBuilder getFuzzyQueriesBuilder(SearchRequestDTO searchRequestDTO) {
         if (searchRequestDTO == null){
             return null;
@@ -164,7 +418,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildFuzzySearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getFuzzyQueriesBuilder(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -175,16 +429,18 @@ public class ElasticSearchBuilder {
     }
 
     private static QueryBuilder getWildCardQueryBuilder(SearchRequestDTO searchRequestDTO) {
+        return getWildCardQueryBuilder(searchRequestDTO,
+                field -> new WildcardQueryBuilder(field, searchRequestDTO.getTextSearch()).caseInsensitive(true));
+    }
+
+    private static QueryBuilder getWildCardQueryBuilder(SearchRequestDTO searchRequestDTO, Function<String, QueryBuilder> fieldQuery) {
         if (CollectionUtils.isEmpty(searchRequestDTO.getFields())) {
             return null;
         }
 
         BoolQueryBuilder boolQuery = new BoolQueryBuilder();
-        List<WildcardQueryBuilder> wildcards = new ArrayList<>();
-        searchRequestDTO.getFields().forEach(field -> {
-            WildcardQueryBuilder wildcard = new WildcardQueryBuilder(field, searchRequestDTO.getTextSearch());
-            wildcards.add(wildcard.caseInsensitive(true));
-        });
+        List<QueryBuilder> wildcards = new ArrayList<>();
+        searchRequestDTO.getFields().forEach(field -> wildcards.add(fieldQuery.apply(field)));
         wildcards.forEach(boolQuery::should);
 
         return QueryBuilders.boolQuery().filter(boolQuery);
@@ -196,7 +452,7 @@ public class ElasticSearchBuilder {
             if (searchSourceBuilder == null) {
                 return null;
             }
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -206,6 +462,19 @@ public class ElasticSearchBuilder {
         }
     }
 
+    /**
+     * Same as {@link #buildWildCardSearchRequest(String, SearchRequestDTO, Class)}, with every pattern checked by
+     * {@code guard}. Validation errors, including rejected patterns, are thrown instead of returning {@code null}.
+     */
+    public static <T> SearchRequest buildWildCardSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO, QueryCostGuard guard) {
+        QueryBuilder queryBuilder = getWildCardQueryBuilder(searchRequestDTO,
+                field -> guard.wildcard(indexName, field, searchRequestDTO.getTextSearch()));
+        SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
+        searchRequest.source(searchSourceBuilder(searchRequestDTO, queryBuilder, responseDTO));
+
+        return searchRequest;
+    }
+
     private static QueryBuilder getBoostingQueryBuilder(SearchRequestDTO searchRequestDTO) {
         return QueryBuilders.multiMatchQuery(searchRequestDTO.getTextSearch())
                 .type(MultiMatchQueryBuilder.Type.MOST_FIELDS)
@@ -216,7 +485,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildBoostingSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getBoostingQueryBuilder(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
@@ -229,7 +498,7 @@ public class ElasticSearchBuilder {
     public static <T> SearchRequest buildMultiFieldSearchRequest(String indexName, SearchRequestDTO searchRequestDTO, Class<T> responseDTO) {
         try {
             SearchSourceBuilder searchSourceBuilder = searchSourceBuilder(searchRequestDTO, getMultiFieldQueryBuilder(searchRequestDTO), responseDTO);
-            SearchRequest searchRequest = new SearchRequest(indexName);
+            SearchRequest searchRequest = newSearchRequest(indexName, searchRequestDTO);
             searchRequest.source(searchSourceBuilder);
 
             return searchRequest;
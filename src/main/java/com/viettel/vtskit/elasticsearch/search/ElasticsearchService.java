@@ -1,129 +1,793 @@
 package com.viettel.vtskit.elasticsearch.search;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.exception.SearchRejectedException;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.mapper.FieldValueMapper;
+import com.viettel.vtskit.elasticsearch.mapper.SourceProjection;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.request.PagedRequestDTO;
 import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import com.viettel.vtskit.elasticsearch.response.AggregationResultDTO;
+import com.viettel.vtskit.elasticsearch.response.CursorPageDTO;
+import com.viettel.vtskit.elasticsearch.response.SearchResultDTO;
+import com.viettel.vtskit.elasticsearch.resilience.SearchBulkhead;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ElasticsearchService {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchService.class);
-    private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,false);
 
     @Autowired
     private RestHighLevelClient client;
 
+    @Autowired
+    private CustomElasticsearchProperties properties;
+
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    @Qualifier(AppConstants.SEARCH_EXECUTOR_BEAN_NAME)
+    private Executor searchExecutor;
+
+    @Autowired(required = false)
+    private SearchBatcher searchBatcher;
+
+    @Autowired(required = false)
+    private SearchResultCache searchResultCache;
+
+    @Autowired(required = false)
+    private QueryCostGuard queryCostGuard;
+
+    @Autowired(required = false)
+    private HedgedSearcher hedgedSearcher;
+
+    @Autowired(required = false)
+    private IndexResolver indexResolver;
+
+    @Autowired(required = false)
+    private SearchBulkhead searchBulkhead;
+
+    @Autowired(required = false)
+    private SearchTemplates searchTemplates;
+
+    private SearchMetrics searchMetrics = SearchMetrics.NOOP;
+
+    @Autowired(required = false)
+    public void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    /**
+     * Also used by {@link ElasticSearchBuilder} to name the {@code _source} paths and the fields to fetch, so
+     * that they match the property names the mapper reads.
+     */
+    @Autowired
+    public void setDocumentMapper(DocumentMapper documentMapper) {
+        this.documentMapper = documentMapper;
+        SourceProjection.use(documentMapper);
+        FieldValueMapper.use(documentMapper);
+    }
+
     public <T> List<T> handleSearch(final String index, SearchRequestDTO requestDTO, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildHandleSearchRequest(
+        final SearchRequest request = build(SearchOperation.HANDLE, index, requestDTO, () -> ElasticSearchBuilder.buildHandleSearchRequest(
                 index,
                 requestDTO,
                 boolQuery,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.HANDLE);
     }
 
     public <T> List<T> multiSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildMultiFieldSearchRequest(
+        if (searchTemplates != null) {
+            return templateSearch(SearchOperation.MULTI_FIELD, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MULTI_FIELD, index, requestDTO, () -> ElasticSearchBuilder.buildMultiFieldSearchRequest(
                 index,
                 requestDTO,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.MULTI_FIELD);
     }
 
     public <T> List<T> regexpSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildRegexpSearchRequest(
-                index,
-                requestDTO,
-                responseDTO
-        );
+        final SearchRequest request = build(SearchOperation.REGEXP, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.REGEXP);
     }
 
     public <T> List<T> fuzzySearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildFuzzySearchRequest(
+        if (searchTemplates != null) {
+            return templateSearch(SearchOperation.FUZZY, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.FUZZY, index, requestDTO, () -> ElasticSearchBuilder.buildFuzzySearchRequest(
                 index,
                 requestDTO,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.FUZZY);
     }
 
     public <T> List<T> wildCardSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildWildCardSearchRequest(
-                index,
-                requestDTO,
-                responseDTO
-        );
+        final SearchRequest request = build(SearchOperation.WILDCARD, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.WILDCARD);
     }
 
     public <T> List<T> matchPhraseSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        SearchRequest request = ElasticSearchBuilder.buildMatchPhraseSearchRequest(
+        if (searchTemplates != null) {
+            return templateSearch(SearchOperation.MATCH_PHRASE, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MATCH_PHRASE, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhraseSearchRequest(
                 index,
                 requestDTO,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.MATCH_PHRASE);
     }
 
     public <T> List<T> matchPhrasePrefixSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest(
+        if (searchTemplates != null) {
+            return templateSearch(SearchOperation.MATCH_PHRASE_PREFIX, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MATCH_PHRASE_PREFIX, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest(
                 index,
                 requestDTO,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.MATCH_PHRASE_PREFIX);
     }
 
     public <T> List<T> boostingSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
-        final SearchRequest request = ElasticSearchBuilder.buildBoostingSearchRequest(
+        if (searchTemplates != null) {
+            return templateSearch(SearchOperation.BOOSTING, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.BOOSTING, index, requestDTO, () -> ElasticSearchBuilder.buildBoostingSearchRequest(
                 index,
                 requestDTO,
                 responseDTO
-        );
+        ));
 
-        return searchInternal(request, responseDTO);
+        return searchInternal(request, index, responseDTO, SearchOperation.BOOSTING);
     }
+
     public <T> List<T> searchInternal(final SearchRequest request, Class<T> responseDTO) {
+        return searchInternal(request, responseDTO, SearchOperation.CUSTOM);
+    }
+
+    public <T> List<T> searchInternal(final SearchRequest request, Class<T> responseDTO, SearchOperation operation) {
+        return searchInternal(request, indexTag(request), responseDTO, operation);
+    }
+
+    /**
+     * {@code index} is the index expression the caller asked for. It tags metrics and keys the bulkhead and the
+     * hedging latencies, whatever concrete indices the request was resolved to.
+     */
+    private <T> List<T> searchInternal(final SearchRequest request, String index, Class<T> responseDTO, SearchOperation operation) {
         if (request == null) {
             LOG.error("Failed to build search request");
             return Collections.emptyList();
         }
 
         try {
-            final SearchResponse response = client.search(request, RequestOptions.DEFAULT);
-            final SearchHit[] searchHits = response.getHits().getHits();
-            List<T> list = new ArrayList<>(searchHits.length);
-            for (SearchHit hit : searchHits) {
-                list.add(
-                        MAPPER.readValue(hit.getSourceAsString(), responseDTO)
+            if (searchResultCache != null && SearchResultCache.isCacheable(request)) {
+                return searchResultCache.get(
+                        request,
+                        responseDTO,
+                        () -> executeSearch(request, index, operation, properties.getHedge().getDeadline()),
+                        response -> mapHits(response, responseDTO, operation, index)
                 );
             }
 
-            return list;
+            return mapHits(executeSearch(request, index, operation, properties.getHedge().getDeadline()), responseDTO, operation, index);
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            throw e;
         } catch (Exception e) {
             LOG.error(e.getMessage(), e);
+            searchMetrics.recordFailure(operation, index, e);
             return Collections.emptyList();
         }
     }
-}
\ No newline at end of file
+
+    public <T> SearchResultDTO<T> searchWithResult(final SearchRequest request, Class<T> responseDTO, SearchOperation operation) {
+        return searchWithResult(request, responseDTO, operation, properties.getHedge().getDeadline());
+    }
+
+    /**
+     * Like {@link #searchInternal(SearchRequest, Class, SearchOperation)}, but also reports whether the result is
+     * complete. {@code deadline} is sent as the search {@code timeout}: shards that do not answer in time are
+     * left out and the result is marked as timed out rather than failing. The result cache is not used.
+     */
+    public <T> SearchResultDTO<T> searchWithResult(final SearchRequest request, Class<T> responseDTO, SearchOperation operation, Duration deadline) {
+        final SearchResultDTO<T> result = new SearchResultDTO<>();
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            result.setFailure("Failed to build search request");
+            return result;
+        }
+
+        final String index = indexTag(request);
+        try {
+            if (hedgedSearcher == null && deadline != null && request.source() != null && request.source().timeout() == null) {
+                request.source().timeout(TimeValue.timeValueMillis(deadline.toMillis()));
+            }
+            final SearchResponse response = executeSearch(request, index, operation, deadline);
+            result.setContent(mapHits(response, responseDTO, operation, index));
+            result.setTotalHits(response.getHits().getTotalHits() == null ? -1 : response.getHits().getTotalHits().value);
+            result.setTookMillis(response.getTook() == null ? -1 : response.getTook().millis());
+            result.setTimedOut(response.isTimedOut());
+            result.setTotalShards(response.getTotalShards());
+            result.setSuccessfulShards(response.getSuccessfulShards());
+            result.setSkippedShards(response.getSkippedShards());
+            result.setFailedShards(response.getFailedShards());
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            throw e;
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+            searchMetrics.recordFailure(operation, index, e);
+            result.setTimedOut(e instanceof TimeoutException);
+            result.setFailure(e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Sends the stored template, or the cached JSON, of the shape of {@code requestDTO} instead of building a
+     * request. Neither the result cache, batching nor hedging apply; the bulkhead does.
+     */
+    private <T> List<T> templateSearch(SearchOperation operation, String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        try {
+            final SearchRequest request = templateRequest(index, requestDTO);
+            final SearchBulkhead.Permit permit = searchBulkhead != null ? searchBulkhead.acquire(index) : null;
+            final long start = System.nanoTime();
+            final SearchResponse response;
+            try {
+                response = searchTemplates.search(operation, request, requestDTO, responseDTO);
+            } catch (Exception e) {
+                release(permit, e);
+                throw e;
+            }
+            release(permit, null);
+            recordRoundTrip(operation, index, start, response);
+
+            return mapHits(response, responseDTO, operation, index);
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            throw e;
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+            searchMetrics.recordFailure(operation, index, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Async counterpart of {@link #templateSearch}. Cancelling the returned future does not abort the request.
+     */
+    private <T> CompletableFuture<List<T>> templateSearchAsync(SearchOperation operation, String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        final SearchRequest request = templateRequest(index, requestDTO);
+        final SearchBulkhead.Permit permit;
+        try {
+            permit = searchBulkhead != null ? searchBulkhead.acquire(index) : null;
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            final CompletableFuture<List<T>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+
+        final long start = System.nanoTime();
+        final CompletableFuture<List<T>> future = new CompletableFuture<>();
+        future.whenComplete((hits, error) -> {
+            release(permit, error);
+            if (error != null) {
+                searchMetrics.recordFailure(operation, index, error);
+            }
+        });
+        searchTemplates.searchAsync(operation, request, requestDTO, responseDTO).whenComplete((response, error) -> {
+            release(permit, error);
+            if (error != null) {
+                LOG.error(error.getMessage(), error);
+                future.completeExceptionally(error);
+            } else {
+                recordRoundTrip(operation, index, start, response);
+                completeWithHits(future, response, responseDTO, operation, index);
+            }
+        });
+
+        return SearchFutures.withTimeout(future, properties.getAsync().getTimeout());
+    }
+
+    private SearchRequest templateRequest(String index, SearchRequestDTO requestDTO) {
+        final SearchRequest request = ElasticSearchBuilder.newSearchRequest(new String[]{index}, requestDTO);
+        if (indexResolver != null) {
+            indexResolver.apply(request, index, requestDTO);
+        }
+
+        return request;
+    }
+
+    public void invalidateCache(final String index) {
+        if (searchResultCache != null) {
+            searchResultCache.invalidate(index);
+        }
+    }
+
+    public void invalidateCache() {
+        if (searchResultCache != null) {
+            searchResultCache.invalidateAll();
+        }
+    }
+
+    private SearchRequest build(SearchOperation operation, String index, SearchRequestDTO requestDTO, Supplier<SearchRequest> builder) {
+        final long start = System.nanoTime();
+        final SearchRequest request = builder.get();
+        if (request != null && requestDTO != null && indexResolver != null) {
+            indexResolver.apply(request, index, requestDTO);
+        }
+        searchMetrics.recordBuild(operation, index, System.nanoTime() - start);
+
+        return request;
+    }
+
+    private SearchResponse executeSearch(SearchRequest request, String index, SearchOperation operation, Duration deadline) throws Exception {
+        final SearchBulkhead.Permit permit = searchBulkhead != null ? searchBulkhead.acquire(index) : null;
+        final long start = System.nanoTime();
+        final SearchResponse response;
+        try {
+            if (hedgedSearcher != null) {
+                response = await(hedgedSearcher.search(request, operation, index, deadline));
+            } else if (searchBatcher != null) {
+                response = await(SearchFutures.withTimeout(searchBatcher.submit(request), properties.getAsync().getTimeout()));
+            } else {
+                response = client.search(request, RequestOptions.DEFAULT);
+            }
+        } catch (Exception e) {
+            release(permit, e);
+            throw e;
+        }
+        release(permit, null);
+        recordRoundTrip(operation, index, start, response);
+
+        return response;
+    }
+
+    private static void release(SearchBulkhead.Permit permit, Throwable error) {
+        if (permit != null) {
+            permit.release(error);
+        }
+    }
+
+    private static SearchResponse await(CompletableFuture<SearchResponse> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void recordRoundTrip(SearchOperation operation, String index, long start, SearchResponse response) {
+        searchMetrics.recordRoundTrip(
+                operation,
+                index,
+                System.nanoTime() - start,
+                response.getTook() == null ? -1 : response.getTook().millis()
+        );
+    }
+
+    private static String indexTag(SearchRequest request) {
+        if (request == null) {
+            return null;
+        }
+        return request.indices().length == 1 ? request.indices()[0] : String.join(",", request.indices());
+    }
+
+    /**
+     * Pages through the results of {@code request} with a point in time and {@code search_after} instead of
+     * {@code from}/{@code size}, so every page costs the same regardless of its depth. The first call opens the
+     * point in time; pass the returned {@code nextCursor} back as {@link PagedRequestDTO#getCursor()} to
+     * fetch the next page. {@code page} is ignored in this mode.
+     * <p>
+     * When a page with a cursor fails on an overloaded or unreachable cluster, it comes back empty with the cursor
+     * that was passed, so that the same page can be asked again. The point in time is closed only on other
+     * failures, or when it was opened by this call.
+     */
+    public <T> CursorPageDTO<T> searchWithCursor(final SearchRequest request, PagedRequestDTO pageRequest, Class<T> responseDTO) {
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            return new CursorPageDTO<>(Collections.emptyList(), null);
+        }
+
+        final String index = indexTag(request);
+        PointInTimeCursor cursor = null;
+        try {
+            cursor = pageRequest.getCursor() != null
+                    ? PointInTimeCursor.decode(pageRequest.getCursor())
+                    : PointInTimeCursor.open(client, request, pageRequest.getKeepAlive());
+            final long start = System.nanoTime();
+            final SearchResponse response = client.search(cursor.apply(request, pageRequest.getKeepAlive()), RequestOptions.DEFAULT);
+            recordRoundTrip(SearchOperation.CURSOR, index, start, response);
+            final String nextCursor = PointInTimeCursor.next(response, request.source().size());
+            if (nextCursor == null) {
+                PointInTimeCursor.close(client, response.pointInTimeId());
+            }
+
+            return new CursorPageDTO<>(mapHits(response, responseDTO, SearchOperation.CURSOR, index), nextCursor);
+        } catch (ValidateException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+            searchMetrics.recordFailure(SearchOperation.CURSOR, index, e);
+            if (pageRequest.getCursor() != null && SearchBulkhead.isFailure(e)) {
+                return new CursorPageDTO<>(Collections.emptyList(), pageRequest.getCursor());
+            }
+            if (cursor != null) {
+                PointInTimeCursor.close(client, cursor.getPointInTimeId());
+            }
+            return new CursorPageDTO<>(Collections.emptyList(), null);
+        }
+    }
+
+    public long count(final String index, BoolQueryBuilder boolQuery) {
+        final SearchRequest request = build(SearchOperation.COUNT, index, null, () -> ElasticSearchBuilder.buildCountRequest(index, boolQuery, null));
+
+        return aggregateInternal(request, index, SearchOperation.COUNT).getTotalHits();
+    }
+
+    /**
+     * Exact number of documents matching a request built by any of the {@code ElasticSearchBuilder} methods.
+     * No hits are fetched.
+     */
+    public long count(final SearchRequest request) {
+        return aggregateInternal(ElasticSearchBuilder.buildCountRequest(request, null), indexTag(request), SearchOperation.COUNT).getTotalHits();
+    }
+
+    public AggregationResultDTO aggregate(final String index, BoolQueryBuilder boolQuery, Integer trackTotalHitsUpTo, AggregationBuilder... aggregations) {
+        final SearchRequest request = build(SearchOperation.AGGREGATION, index, null, () -> ElasticSearchBuilder.buildCountRequest(
+                index,
+                boolQuery,
+                trackTotalHitsUpTo,
+                aggregations
+        ));
+
+        return aggregateInternal(request, index, SearchOperation.AGGREGATION);
+    }
+
+    /**
+     * Runs {@code aggregations} over the documents matched by {@code request} without fetching any hit. Total hits
+     * are counted exactly up to {@code trackTotalHitsUpTo}, or exactly when it is {@code null}.
+     */
+    public AggregationResultDTO aggregate(final SearchRequest request, Integer trackTotalHitsUpTo, AggregationBuilder... aggregations) {
+        return aggregateInternal(ElasticSearchBuilder.buildCountRequest(request, trackTotalHitsUpTo, aggregations), indexTag(request), SearchOperation.AGGREGATION);
+    }
+
+    private AggregationResultDTO aggregateInternal(final SearchRequest request, String index, SearchOperation operation) {
+        final AggregationResultDTO result = new AggregationResultDTO();
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            return result;
+        }
+
+        try {
+            final SearchResponse response = executeSearch(request, index, operation, properties.getHedge().getDeadline());
+            final TotalHits totalHits = response.getHits().getTotalHits();
+            if (totalHits != null) {
+                result.setTotalHits(totalHits.value);
+                result.setTotalHitsExact(totalHits.relation == TotalHits.Relation.EQUAL_TO);
+            }
+            if (response.getAggregations() != null) {
+                AggregationReader.read(response.getAggregations(), result.getBuckets(), result.getValues());
+            }
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            throw e;
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+            searchMetrics.recordFailure(operation, index, e);
+        }
+
+        return result;
+    }
+
+    public <T> Stream<T> stream(final String index, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
+        return stream(index, boolQuery, responseDTO, properties.getScroll().getBatchSize(), 1);
+    }
+
+    /**
+     * Lazily streams every document matching {@code boolQuery} using scroll. Only one batch per slice is held in
+     * memory and the next batch is prefetched while the current one is consumed. With {@code slices > 1} the
+     * scroll is split into sliced scrolls that a parallel stream reads concurrently. The stream must be closed,
+     * e.g. with try-with-resources, to release the scroll contexts early.
+     */
+    public <T> Stream<T> stream(final String index, BoolQueryBuilder boolQuery, Class<T> responseDTO, int batchSize, int slices) {
+        final TimeValue keepAlive = TimeValue.timeValueMillis(properties.getScroll().getKeepAlive().toMillis());
+        final List<ScrollSpliterator.Slice<T>> scrollSlices = ScrollSpliterator.slices(
+                client,
+                () -> ElasticSearchBuilder.buildStreamSearchRequest(index, boolQuery, batchSize, responseDTO),
+                slices,
+                keepAlive,
+                hit -> {
+                    try {
+                        return readHit(hit, responseDTO);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+        );
+
+        return StreamSupport.stream(ScrollSpliterator.of(scrollSlices), slices > 1)
+                .onClose(() -> scrollSlices.forEach(ScrollSpliterator.Slice::close));
+    }
+
+    public <T> CompletableFuture<List<T>> handleSearchAsync(final String index, SearchRequestDTO requestDTO, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
+        final SearchRequest request = build(SearchOperation.HANDLE, index, requestDTO, () -> ElasticSearchBuilder.buildHandleSearchRequest(
+                index,
+                requestDTO,
+                boolQuery,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.HANDLE);
+    }
+
+    public <T> CompletableFuture<List<T>> multiSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        if (searchTemplates != null) {
+            return templateSearchAsync(SearchOperation.MULTI_FIELD, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MULTI_FIELD, index, requestDTO, () -> ElasticSearchBuilder.buildMultiFieldSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.MULTI_FIELD);
+    }
+
+    public <T> CompletableFuture<List<T>> regexpSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        final SearchRequest request = build(SearchOperation.REGEXP, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.REGEXP);
+    }
+
+    public <T> CompletableFuture<List<T>> fuzzySearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        if (searchTemplates != null) {
+            return templateSearchAsync(SearchOperation.FUZZY, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.FUZZY, index, requestDTO, () -> ElasticSearchBuilder.buildFuzzySearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.FUZZY);
+    }
+
+    public <T> CompletableFuture<List<T>> wildCardSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        final SearchRequest request = build(SearchOperation.WILDCARD, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.WILDCARD);
+    }
+
+    public <T> CompletableFuture<List<T>> matchPhraseSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        if (searchTemplates != null) {
+            return templateSearchAsync(SearchOperation.MATCH_PHRASE, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MATCH_PHRASE, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhraseSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.MATCH_PHRASE);
+    }
+
+    public <T> CompletableFuture<List<T>> matchPhrasePrefixSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        if (searchTemplates != null) {
+            return templateSearchAsync(SearchOperation.MATCH_PHRASE_PREFIX, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.MATCH_PHRASE_PREFIX, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.MATCH_PHRASE_PREFIX);
+    }
+
+    public <T> CompletableFuture<List<T>> boostingSearchAsync(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        if (searchTemplates != null) {
+            return templateSearchAsync(SearchOperation.BOOSTING, index, requestDTO, responseDTO);
+        }
+
+        final SearchRequest request = build(SearchOperation.BOOSTING, index, requestDTO, () -> ElasticSearchBuilder.buildBoostingSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ));
+
+        return searchInternalAsync(request, index, responseDTO, SearchOperation.BOOSTING);
+    }
+
+    public <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, Class<T> responseDTO) {
+        return searchInternalAsync(request, responseDTO, SearchOperation.CUSTOM);
+    }
+
+    public <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, Class<T> responseDTO, SearchOperation operation) {
+        return searchInternalAsync(request, responseDTO, operation, properties.getAsync().getTimeout());
+    }
+
+    public <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, Class<T> responseDTO, Duration timeout) {
+        return searchInternalAsync(request, responseDTO, SearchOperation.CUSTOM, timeout);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread. Hits are mapped on the search executor so the
+     * HTTP client's IO reactor threads are never used for deserialization. Cancelling the returned future, or
+     * letting {@code timeout} elapse, aborts the in-flight HTTP request.
+     */
+    public <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, Class<T> responseDTO, SearchOperation operation, Duration timeout) {
+        return searchInternalAsync(request, indexTag(request), responseDTO, operation, timeout);
+    }
+
+    private <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, String index, Class<T> responseDTO, SearchOperation operation) {
+        return searchInternalAsync(request, index, responseDTO, operation, properties.getAsync().getTimeout());
+    }
+
+    private <T> CompletableFuture<List<T>> searchInternalAsync(final SearchRequest request, String index, Class<T> responseDTO, SearchOperation operation, Duration timeout) {
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        final SearchBulkhead.Permit permit;
+        try {
+            permit = searchBulkhead != null ? searchBulkhead.acquire(index) : null;
+        } catch (SearchRejectedException e) {
+            searchMetrics.recordFailure(operation, index, e);
+            final CompletableFuture<List<T>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+
+        final long start = System.nanoTime();
+        final CompletableFuture<List<T>> future = new CompletableFuture<>();
+        future.whenComplete((hits, error) -> {
+            // Covers timeouts and cancellation; a response already released the permit
+            release(permit, error);
+            if (error != null) {
+                searchMetrics.recordFailure(operation, index, error);
+            }
+        });
+        final CompletableFuture<SearchResponse> pending = hedgedSearcher != null
+                ? hedgedSearcher.search(request, operation, index, properties.getHedge().getDeadline())
+                : searchBatcher != null ? searchBatcher.submit(request) : null;
+        if (pending != null) {
+            pending.whenComplete((response, error) -> {
+                release(permit, error);
+                if (error != null) {
+                    LOG.error(error.getMessage(), error);
+                    future.completeExceptionally(error);
+                } else {
+                    recordRoundTrip(operation, index, start, response);
+                    completeWithHits(future, response, responseDTO, operation, index);
+                }
+            });
+            future.whenComplete((hits, error) -> {
+                if (error != null) {
+                    pending.cancel(false);
+                }
+            });
+            return SearchFutures.withTimeout(future, timeout);
+        }
+
+        final Cancellable cancellable = client.searchAsync(request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                release(permit, null);
+                recordRoundTrip(operation, index, start, response);
+                completeWithHits(future, response, responseDTO, operation, index);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                release(permit, e);
+                LOG.error(e.getMessage(), e);
+                future.completeExceptionally(e);
+            }
+        });
+        SearchFutures.cancelOnCompletion(future, cancellable);
+
+        return SearchFutures.withTimeout(future, timeout);
+    }
+
+    private <T> void completeWithHits(CompletableFuture<List<T>> future, SearchResponse response, Class<T> responseDTO,
+                                      SearchOperation operation, String index) {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            searchExecutor.execute(() -> {
+                try {
+                    future.complete(mapHits(response, responseDTO, operation, index));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <T> List<T> mapHits(SearchResponse response, Class<T> responseDTO, SearchOperation operation, String index) throws IOException {
+        final long start = System.nanoTime();
+        final SearchHit[] searchHits = response.getHits().getHits();
+        List<T> list = new ArrayList<>(searchHits.length);
+        long payloadBytes = 0;
+        for (SearchHit hit : searchHits) {
+            list.add(readHit(hit, responseDTO));
+            payloadBytes += hit.getSourceRef() == null ? 0 : hit.getSourceRef().length();
+        }
+        searchMetrics.recordMapping(operation, index, System.nanoTime() - start, searchHits.length, payloadBytes);
+
+        return list;
+    }
+
+    private <T> T readHit(SearchHit hit, Class<T> responseDTO) throws IOException {
+        return documentMapper.read(hit, responseDTO);
+    }
+}
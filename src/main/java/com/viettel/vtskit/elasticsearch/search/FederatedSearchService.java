@@ -0,0 +1,305 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import com.viettel.vtskit.elasticsearch.response.FederatedHitDTO;
+import com.viettel.vtskit.elasticsearch.response.FederatedResultDTO;
+import com.viettel.vtskit.elasticsearch.response.TargetStatusDTO;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Sends the same search to several clusters at once, each through its own client, and merges the answers
+ * into a single ranked page.
+ * <ul>
+ *     <li>Every target is asked for its own top {@code from + size} hits only. The pages are merged with a
+ *     k-way heap on the score or the sort values of the request, and only the hits of the merged page have
+ *     their {@code _source} mapped.</li>
+ *     <li>All targets share one deadline. Shards are asked to answer {@code timeout-margin} before it; a target
+ *     that has not answered by then is aborted and reported as timed out, and the page is merged from the
+ *     others.</li>
+ * </ul>
+ * Scores are computed by each cluster on its own term statistics. Merging by score is only meaningful when
+ * the targets hold comparable data; sort on a field otherwise.
+ */
+public class FederatedSearchService {
+    private static final Logger LOG = LoggerFactory.getLogger(FederatedSearchService.class);
+    private static final int DEFAULT_SIZE = 10;
+
+    private final Map<String, Target> targets = new LinkedHashMap<>();
+    private final CustomElasticsearchProperties.Federation properties;
+    private final DocumentMapper documentMapper;
+    private final Executor searchExecutor;
+    private SearchMetrics searchMetrics = SearchMetrics.NOOP;
+
+    /**
+     * @param clients clients by target name, in merge tie-break order. Clients of the configured targets are
+     *                closed with this service; the local one is not.
+     */
+    public FederatedSearchService(Map<String, RestHighLevelClient> clients, CustomElasticsearchProperties.Federation properties,
+                                  DocumentMapper documentMapper, Executor searchExecutor) {
+        this.properties = properties;
+        this.documentMapper = documentMapper;
+        this.searchExecutor = searchExecutor;
+        clients.forEach((name, client) -> {
+            final CustomElasticsearchProperties.FederationTarget target = properties.getTargets().get(name);
+            targets.put(name, new Target(name, client, target == null ? null : target.getIndex(), target != null));
+        });
+    }
+
+    @Autowired(required = false)
+    public void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    public <T> FederatedResultDTO<T> handleSearch(final String index, SearchRequestDTO requestDTO, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
+        return search(index, targetIndex -> ElasticSearchBuilder.buildHandleSearchRequest(
+                targetIndex,
+                requestDTO,
+                boolQuery,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> FederatedResultDTO<T> multiSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(index, targetIndex -> ElasticSearchBuilder.buildMultiFieldSearchRequest(
+                targetIndex,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> FederatedResultDTO<T> search(final String index, Function<String, SearchRequest> builder, Class<T> responseDTO) {
+        return search(index, builder, responseDTO, properties.getDeadline());
+    }
+
+    /**
+     * Blocking form of {@link #searchAsync}. Targets that fail or time out are reported in the result rather
+     * than thrown.
+     */
+    public <T> FederatedResultDTO<T> search(final String index, Function<String, SearchRequest> builder, Class<T> responseDTO, Duration deadline) {
+        try {
+            return searchAsync(index, builder, responseDTO, deadline).get();
+        } catch (ValidateException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FederatedResultDTO<>();
+        } catch (ExecutionException e) {
+            LOG.error(e.getCause().getMessage(), e.getCause());
+            return new FederatedResultDTO<>();
+        }
+    }
+
+    /**
+     * Searches every target with the request {@code builder} makes for the index to search there: the target's
+     * {@code index} when configured, {@code index} otherwise. The page is taken from the {@code from} and
+     * {@code size} of the built request.
+     */
+    public <T> CompletableFuture<FederatedResultDTO<T>> searchAsync(final String index, Function<String, SearchRequest> builder,
+                                                                   Class<T> responseDTO, Duration deadline) {
+        final long deadlineNanos = deadline == null ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+        final List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(targets.size());
+        SearchSourceBuilder source = null;
+        int from = 0;
+        int size = DEFAULT_SIZE;
+        for (Target target : targets.values()) {
+            final String targetIndex = target.index != null ? target.index : index;
+            final SearchRequest request = builder.apply(targetIndex);
+            if (request == null || request.source() == null) {
+                outcomes.add(CompletableFuture.completedFuture(new Outcome(target, null,
+                        new IllegalArgumentException("Failed to build search request"), -1)));
+                continue;
+            }
+
+            if (source == null) {
+                source = request.source();
+                from = Math.max(0, source.from());
+                size = source.size() < 0 ? DEFAULT_SIZE : source.size();
+            }
+            // Each target must return its own top of the merged page
+            request.source().from(0).size(from + size);
+            if (deadline != null && properties.getTimeoutMargin() != null) {
+                final long timeout = deadline.minus(properties.getTimeoutMargin()).toMillis();
+                request.source().timeout(TimeValue.timeValueMillis(Math.max(1, timeout)));
+            }
+            outcomes.add(send(target, targetIndex, request, deadlineNanos));
+        }
+
+        final Comparator<SearchHit> order = TopHitsMerger.order(source);
+        final int pageFrom = from;
+        final int pageSize = size;
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> merge(outcomes, order, pageFrom, pageSize, responseDTO), searchExecutor);
+    }
+
+    public void close() throws IOException {
+        for (Target target : targets.values()) {
+            if (target.owned) {
+                target.client.close();
+            }
+        }
+    }
+
+    private CompletableFuture<Outcome> send(Target target, String targetIndex, SearchRequest request, long deadlineNanos) {
+        final String tag = target.name + ':' + targetIndex;
+        final long start = System.nanoTime();
+        final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        try {
+            final Cancellable cancellable = target.client.searchAsync(request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    searchMetrics.recordRoundTrip(
+                            SearchOperation.FEDERATED,
+                            tag,
+                            System.nanoTime() - start,
+                            response.getTook() == null ? -1 : response.getTook().millis()
+                    );
+                    future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            SearchFutures.cancelOnCompletion(future, cancellable);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+
+        // The deadline is shared, so targets sent later get what is left of it
+        final Duration remaining = deadlineNanos == Long.MAX_VALUE ? null : Duration.ofNanos(Math.max(1_000_000, deadlineNanos - System.nanoTime()));
+        return SearchFutures.withTimeout(future, remaining).handle((response, error) -> {
+            if (error != null) {
+                searchMetrics.recordFailure(SearchOperation.FEDERATED, tag, error);
+                LOG.warn("Federated search on {} failed: {}", tag, error.getMessage());
+            }
+            return new Outcome(target, response, error, System.nanoTime() - start);
+        });
+    }
+
+    private <T> FederatedResultDTO<T> merge(List<CompletableFuture<Outcome>> outcomes, Comparator<SearchHit> order,
+                                           int from, int size, Class<T> responseDTO) {
+        final FederatedResultDTO<T> result = new FederatedResultDTO<>();
+        final List<Outcome> answered = new ArrayList<>(outcomes.size());
+        final List<SearchHit[]> lists = new ArrayList<>(outcomes.size());
+        long totalHits = 0;
+        for (CompletableFuture<Outcome> future : outcomes) {
+            final Outcome outcome = future.join();
+            result.getTargets().add(outcome.status());
+            if (outcome.response != null) {
+                answered.add(outcome);
+                lists.add(outcome.response.getHits().getHits());
+                if (outcome.response.getHits().getTotalHits() != null) {
+                    totalHits += outcome.response.getHits().getTotalHits().value;
+                }
+            }
+        }
+        result.setTotalHits(totalHits);
+
+        final long start = System.nanoTime();
+        final List<int[]> page = TopHitsMerger.merge(lists, order, from, size);
+        final List<FederatedHitDTO<T>> hits = new ArrayList<>(page.size());
+        long payloadBytes = 0;
+        for (int[] position : page) {
+            final Outcome outcome = answered.get(position[0]);
+            final SearchHit hit = lists.get(position[0])[position[1]];
+            payloadBytes += hit.getSourceRef() == null ? 0 : hit.getSourceRef().length();
+            hits.add(new FederatedHitDTO<>(outcome.target.name, hit.getIndex(), hit.getId(), hit.getScore(), hit.getSortValues(), read(hit, responseDTO)));
+        }
+        searchMetrics.recordMapping(SearchOperation.FEDERATED, String.join(",", targets.keySet()), System.nanoTime() - start, hits.size(), payloadBytes);
+        result.setHits(Collections.unmodifiableList(hits));
+
+        return result;
+    }
+
+    private <T> T read(SearchHit hit, Class<T> responseDTO) {
+        try {
+            return documentMapper.read(hit, responseDTO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Target {
+        private final String name;
+        private final RestHighLevelClient client;
+        private final String index;
+        private final boolean owned;
+
+        private Target(String name, RestHighLevelClient client, String index, boolean owned) {
+            this.name = name;
+            this.client = client;
+            this.index = index;
+            this.owned = owned;
+        }
+    }
+
+    private static final class Outcome {
+        private final Target target;
+        private final SearchResponse response;
+        private final Throwable error;
+        private final long nanos;
+
+        private Outcome(Target target, SearchResponse response, Throwable error, long nanos) {
+            this.target = target;
+            this.response = response;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        private TargetStatusDTO status() {
+            final TargetStatusDTO status = new TargetStatusDTO();
+            status.setTarget(target.name);
+            if (response == null) {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                status.setStatus(cause instanceof TimeoutException ? TargetStatusDTO.Status.TIMED_OUT : TargetStatusDTO.Status.FAILED);
+                status.setFailure(cause == null ? null : cause.getMessage());
+                status.setTookMillis(nanos < 0 ? -1 : nanos / 1_000_000);
+                return status;
+            }
+
+            status.setStatus(response.isTimedOut() || response.getFailedShards() > 0
+                    ? TargetStatusDTO.Status.PARTIAL
+                    : TargetStatusDTO.Status.OK);
+            status.setTookMillis(response.getTook() == null ? nanos / 1_000_000 : response.getTook().millis());
+            status.setReturnedHits(response.getHits().getHits().length);
+            status.setTotalHits(response.getHits().getTotalHits() == null ? -1 : response.getHits().getTotalHits().value);
+            if (response.getShardFailures().length > 0) {
+                status.setFailure(response.getShardFailures()[0].reason());
+            }
+            return status;
+        }
+    }
+}
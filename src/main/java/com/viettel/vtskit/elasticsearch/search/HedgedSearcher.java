@@ -0,0 +1,137 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cuts tail latency by sending a duplicate of a search that is slower than usual. Latencies are tracked per
+ * search type and index; once a search has been outstanding for longer than the configured percentile, the
+ * same request is sent again with a different {@code preference}, so that other shard copies (and, through the
+ * client's round robin, another coordinating node) serve it. The first response wins and the other request is
+ * aborted.
+ * <p>
+ * The deadline is sent as the search {@code timeout}, so shards that have not answered in time are reported
+ * as a partial result instead of failing the search. The client gives up {@code deadline-grace} later.
+ */
+public class HedgedSearcher {
+    private static final String HEDGE_PREFERENCE_PREFIX = "hedge-";
+
+    private final RestHighLevelClient client;
+    private final CustomElasticsearchProperties.Hedge properties;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+
+    public HedgedSearcher(RestHighLevelClient client, CustomElasticsearchProperties.Hedge properties) {
+        this.client = client;
+        this.properties = properties;
+    }
+
+    public CompletableFuture<SearchResponse> search(SearchRequest request, SearchOperation operation, String index, Duration deadline) {
+        applyDeadline(request, deadline);
+        searchCount.increment();
+
+        final LatencyWindow window = windows.computeIfAbsent(operation.tag() + '/' + index, key -> new LatencyWindow(properties.getWindowSize()));
+        final long start = System.nanoTime();
+        final CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+        final Queue<Cancellable> attempts = new ConcurrentLinkedQueue<>();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+
+        send(request, false, result, attempts, outstanding);
+
+        final long hedgeDelay = hedgeDelayNanos(window, deadline);
+        final ScheduledFuture<?> hedge = hedgeDelay < 0 ? null : SearchFutures.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedgeCount.increment();
+            send(new SearchRequest(request).preference(HEDGE_PREFERENCE_PREFIX + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE)),
+                    true, result, attempts, outstanding);
+        }, hedgeDelay, TimeUnit.NANOSECONDS);
+
+        result.whenComplete((response, error) -> {
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+            attempts.forEach(Cancellable::cancel);
+            if (error == null) {
+                window.record(System.nanoTime() - start);
+            }
+        });
+
+        return SearchFutures.withTimeout(result, deadline == null ? null : deadline.plus(properties.getDeadlineGrace()));
+    }
+
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    private void send(SearchRequest request, boolean hedged, CompletableFuture<SearchResponse> result,
+                      Queue<Cancellable> attempts, AtomicInteger outstanding) {
+        final Cancellable cancellable = client.searchAsync(request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                if (result.complete(response) && hedged) {
+                    hedgeWinCount.increment();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // Only fail once every attempt has failed, a slow primary may still be beaten by its hedge
+                if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        attempts.add(cancellable);
+        if (result.isDone()) {
+            cancellable.cancel();
+        }
+    }
+
+    private long hedgeDelayNanos(LatencyWindow window, Duration deadline) {
+        final long percentile = window.percentile(properties.getPercentile(), properties.getMinSamples());
+        if (percentile < 0) {
+            return -1;
+        }
+
+        final long delay = Math.max(properties.getMinDelay().toNanos(), Math.min(properties.getMaxDelay().toNanos(), percentile));
+        return deadline != null && delay >= deadline.toNanos() ? -1 : delay;
+    }
+
+    private static void applyDeadline(SearchRequest request, Duration deadline) {
+        if (deadline != null && request.source() != null && request.source().timeout() == null) {
+            request.source().timeout(TimeValue.timeValueMillis(deadline.toMillis()));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+
+/**
+ * Narrows the index expression passed to {@link ElasticsearchService} down to the concrete indices that can
+ * contain matches for a request. Declare a bean of this type to replace the default time based resolver.
+ */
+public interface IndexResolver {
+
+    /**
+     * Returns the indices to search. Must never be empty: return {@code index} itself when nothing can be
+     * pruned, as an empty list would search every index of the cluster.
+     */
+    String[] resolve(String index, SearchRequestDTO request);
+
+    /**
+     * Points {@code searchRequest} at the indices resolved for it. When they differ from {@code index}, missing
+     * indices are ignored: one deleted by retention since they were resolved must not fail the search.
+     */
+    default SearchRequest apply(SearchRequest searchRequest, String index, SearchRequestDTO request) {
+        final String[] indices = resolve(index, request);
+        searchRequest.indices(indices);
+        if (indices.length != 1 || !indices[0].equals(index)) {
+            searchRequest.indicesOptions(IndicesOptions.lenientExpandOpen());
+        }
+
+        return searchRequest;
+    }
+}
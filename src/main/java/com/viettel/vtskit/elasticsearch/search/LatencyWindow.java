@@ -0,0 +1,46 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of the last {@code size} latencies. Percentiles are read from a sorted snapshot that is
+ * refreshed every {@code size / 16} new samples, so reading them is cheap on the search path.
+ */
+final class LatencyWindow {
+    private final long[] samples;
+    private final int refreshEvery;
+    private int next;
+    private int count;
+    private long[] sorted;
+    private int sinceSnapshot;
+
+    LatencyWindow(int size) {
+        this.samples = new long[Math.max(1, size)];
+        this.refreshEvery = Math.max(1, samples.length / 16);
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceSnapshot++;
+    }
+
+    /**
+     * Returns the {@code percentile} (0..1) of the window in nanoseconds, or {@code -1} while fewer than
+     * {@code minSamples} latencies have been recorded.
+     */
+    synchronized long percentile(double percentile, int minSamples) {
+        if (count == 0 || count < minSamples) {
+            return -1;
+        }
+        if (sorted == null || sinceSnapshot >= refreshEvery) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceSnapshot = 0;
+        }
+
+        final int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
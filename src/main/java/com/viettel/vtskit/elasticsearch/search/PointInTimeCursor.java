@@ -0,0 +1,145 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.constants.PageConstants;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.JacksonDocumentMapper;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time + {@code search_after} pagination. The continuation token handed to callers is an opaque
+ * base64 encoding of the point-in-time id and the sort values of the last hit of the previous page.
+ */
+final class PointInTimeCursor {
+    private static final String PIT_KEY = "p";
+    private static final String SEARCH_AFTER_KEY = "a";
+
+    private final String pointInTimeId;
+    private final Object[] searchAfter;
+
+    private PointInTimeCursor(String pointInTimeId, Object[] searchAfter) {
+        this.pointInTimeId = pointInTimeId;
+        this.searchAfter = searchAfter;
+    }
+
+    String getPointInTimeId() {
+        return pointInTimeId;
+    }
+
+    static PointInTimeCursor open(RestHighLevelClient client, SearchRequest request, String keepAlive) throws IOException {
+        final String pointInTimeId = client.openPointInTime(openRequest(request, keepAlive), RequestOptions.DEFAULT).getPointInTimeId();
+
+        return of(pointInTimeId);
+    }
+
+    static OpenPointInTimeRequest openRequest(SearchRequest request, String keepAlive) {
+        return new OpenPointInTimeRequest(request.indices())
+                .keepAlive(TimeValue.parseTimeValue(keepAlive, "keep_alive"))
+                .routing(request.routing())
+                .preference(request.preference());
+    }
+
+    static PointInTimeCursor of(String pointInTimeId) {
+        return new PointInTimeCursor(pointInTimeId, null);
+    }
+
+    static void close(RestHighLevelClient client, String pointInTimeId) {
+        try {
+            client.closePointInTime(new ClosePointInTimeRequest(pointInTimeId), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            // The point in time expires on its own after keep_alive
+        }
+    }
+
+    static PointInTimeCursor decode(String cursor) {
+        try {
+            final Map<?, ?> token = JacksonDocumentMapper.MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), Map.class);
+            final String pointInTimeId = (String) token.get(PIT_KEY);
+            final List<?> searchAfter = (List<?>) token.get(SEARCH_AFTER_KEY);
+            if (pointInTimeId == null || CollectionUtils.isEmpty(searchAfter)) {
+                throw new ValidateException(PageConstants.CURSOR_IS_INVALID);
+            }
+
+            return new PointInTimeCursor(pointInTimeId, searchAfter.toArray());
+        } catch (ValidateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ValidateException(PageConstants.CURSOR_IS_INVALID);
+        }
+    }
+
+    /**
+     * Rewrites a request built by {@link ElasticSearchBuilder} to run against this point in time. Indices,
+     * routing and preference are dropped because they are bound to the point in time by {@link #openRequest}, and
+     * Elasticsearch rejects them on a point in time search. {@code from} is reset and a {@code _shard_doc}
+     * tiebreaker is appended so that {@code search_after} is stable across pages.
+     */
+    SearchRequest apply(SearchRequest request, String keepAlive) {
+        final SearchSourceBuilder source = request.source();
+        source.from(0);
+        source.pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId).setKeepAlive(keepAlive));
+        if (CollectionUtils.isEmpty(source.sorts())) {
+            source.sort(SortBuilders.scoreSort());
+        }
+        source.sort(SortBuilders.fieldSort(FieldSortBuilder.SHARD_DOC_FIELD_NAME).order(SortOrder.ASC));
+        if (searchAfter != null) {
+            source.searchAfter(searchAfter);
+        }
+
+        return new SearchRequest().source(source);
+    }
+
+    /**
+     * Moves a request returned by {@link #apply} on to the page after {@code response}, or returns {@code null}
+     * when {@code response} is the last page.
+     */
+    static SearchRequest advance(SearchRequest request, SearchResponse response, String keepAlive) {
+        final SearchHit[] hits = response.getHits().getHits();
+        if (hits.length == 0 || hits.length < request.source().size()) {
+            return null;
+        }
+
+        request.source()
+                .pointInTimeBuilder(new PointInTimeBuilder(response.pointInTimeId()).setKeepAlive(keepAlive))
+                .searchAfter(hits[hits.length - 1].getSortValues());
+        return request;
+    }
+
+    /**
+     * Returns the token for the page after {@code response}, or {@code null} when {@code response} is the last page.
+     */
+    static String next(SearchResponse response, int size) {
+        final SearchHit[] hits = response.getHits().getHits();
+        if (hits.length == 0 || hits.length < size) {
+            return null;
+        }
+
+        final Map<String, Object> token = new HashMap<>();
+        token.put(PIT_KEY, response.pointInTimeId());
+        token.put(SEARCH_AFTER_KEY, hits[hits.length - 1].getSortValues());
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(JacksonDocumentMapper.MAPPER.writeValueAsString(token).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import org.elasticsearch.index.query.MultiTermQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RegexpQueryBuilder;
+import org.elasticsearch.index.query.WildcardQueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classifies user supplied {@code wildcard} and {@code regexp} patterns by how much of the term dictionary they
+ * have to scan, and builds the query for a field accordingly.
+ * <ul>
+ *     <li>Equivalent cheaper forms are used when {@code rewrite} is on: {@code iph*} and {@code iph.*} become a
+ *     {@code prefix} query, PCRE style {@code ^...$} anchors are dropped from regexps (Lucene regexps are always
+ *     anchored), and patterns without a usable literal prefix go to {@code wildcard-subfield} if configured.</li>
+ *     <li>Patterns that remain expensive are handled by the {@code policy}: allowed as is, rejected with a
+ *     {@link ValidateException}, or capped to the best {@code cap-terms} matching terms. Capping only limits the
+ *     clauses of the rewritten query, not the term dictionary scan, so patterns without any literal prefix are
+ *     sent to {@code wildcard-subfield} when it is configured and rejected otherwise.</li>
+ * </ul>
+ * Every decision other than a plain pass-through is reported to {@link SearchMetrics#recordGuard}.
+ */
+public class QueryCostGuard {
+    private static final Logger LOG = LoggerFactory.getLogger(QueryCostGuard.class);
+
+    public static final String PREFIX = "prefix";
+    public static final String SUBFIELD = "subfield";
+    public static final String ANCHOR = "anchor";
+    public static final String ALLOWED = "allowed";
+    public static final String REJECTED = "rejected";
+    public static final String CAPPED = "capped";
+
+    private static final String REGEXP_SPECIAL = ".?+*|{}[]()\"\\#@&<>~";
+    private static final String REGEXP_QUANTIFIERS = "?+*{";
+
+    public enum Cost {
+        /** No wildcard at all, a single term lookup */
+        LITERAL,
+        /** A literal followed by a single trailing "match anything" */
+        PREFIX,
+        /** Wildcards after a literal prefix of at least {@code min-prefix-length} characters */
+        BOUNDED,
+        /** Leading wildcard or too short a literal prefix: the whole term dictionary may be scanned */
+        EXPENSIVE
+    }
+
+    private final CustomElasticsearchProperties.QueryGuard properties;
+    private final SearchMetrics searchMetrics;
+
+    public QueryCostGuard(CustomElasticsearchProperties.QueryGuard properties, SearchMetrics searchMetrics) {
+        this.properties = properties;
+        this.searchMetrics = searchMetrics;
+    }
+
+    public QueryBuilder wildcard(String index, String field, String pattern) {
+        final Pattern parsed = parseWildcard(pattern);
+        final Cost cost = cost(parsed);
+        if (properties.isRewrite() && cost == Cost.PREFIX) {
+            record(SearchOperation.WILDCARD, index, PREFIX, pattern);
+            return QueryBuilders.prefixQuery(field, parsed.literalPrefix).caseInsensitive(true);
+        }
+        if (properties.isRewrite() && cost == Cost.EXPENSIVE && StringUtils.hasText(properties.getWildcardSubfield())) {
+            record(SearchOperation.WILDCARD, index, SUBFIELD, pattern);
+            return new WildcardQueryBuilder(subfield(field), pattern).caseInsensitive(true);
+        }
+
+        final WildcardQueryBuilder query = new WildcardQueryBuilder(field, pattern).caseInsensitive(true);
+        return cost == Cost.EXPENSIVE
+                ? applyPolicy(SearchOperation.WILDCARD, index, query, pattern, parsed.literalPrefix.isEmpty())
+                : query;
+    }
+
+    public QueryBuilder regexp(String index, String field, String pattern) {
+        String expression = pattern;
+        if (properties.isRewrite()) {
+            expression = stripAnchors(pattern);
+            if (!expression.equals(pattern)) {
+                record(SearchOperation.REGEXP, index, ANCHOR, pattern);
+            }
+        }
+
+        final List<Pattern> branches = parseRegexp(expression);
+        final Cost cost = cost(branches);
+        if (properties.isRewrite() && cost == Cost.PREFIX && branches.size() == 1) {
+            record(SearchOperation.REGEXP, index, PREFIX, pattern);
+            return QueryBuilders.prefixQuery(field, branches.get(0).literalPrefix).caseInsensitive(true);
+        }
+        if (properties.isRewrite() && cost == Cost.EXPENSIVE && StringUtils.hasText(properties.getWildcardSubfield())) {
+            record(SearchOperation.REGEXP, index, SUBFIELD, pattern);
+            return regexpQuery(subfield(field), expression);
+        }
+
+        final RegexpQueryBuilder query = regexpQuery(field, expression);
+        return cost == Cost.EXPENSIVE
+                ? applyPolicy(SearchOperation.REGEXP, index, query, pattern, hasLeadingWildcard(branches))
+                : query;
+    }
+
+    public Cost wildcardCost(String pattern) {
+        return cost(parseWildcard(pattern));
+    }
+
+    public Cost regexpCost(String pattern) {
+        return cost(parseRegexp(properties.isRewrite() ? stripAnchors(pattern) : pattern));
+    }
+
+    private RegexpQueryBuilder regexpQuery(String field, String expression) {
+        return QueryBuilders.regexpQuery(field, expression)
+                .caseInsensitive(true)
+                .maxDeterminizedStates(properties.getMaxDeterminizedStates());
+    }
+
+    private String subfield(String field) {
+        return field + "." + properties.getWildcardSubfield();
+    }
+
+    private QueryBuilder applyPolicy(SearchOperation operation, String index, MultiTermQueryBuilder query, String pattern,
+                                     boolean leadingWildcard) {
+        switch (properties.getPolicy()) {
+            case REJECT:
+                return reject(operation, index, pattern);
+            case CAP:
+                if (leadingWildcard) {
+                    // top_terms still enumerates every term, so it cannot bound a leading wildcard
+                    if (!StringUtils.hasText(properties.getWildcardSubfield())) {
+                        return reject(operation, index, pattern);
+                    }
+                    record(operation, index, SUBFIELD, pattern);
+                    return query instanceof RegexpQueryBuilder
+                            ? regexpQuery(subfield(query.fieldName()), ((RegexpQueryBuilder) query).value())
+                            : new WildcardQueryBuilder(subfield(query.fieldName()), ((WildcardQueryBuilder) query).value())
+                            .caseInsensitive(true);
+                }
+                record(operation, index, CAPPED, pattern);
+                final String rewrite = "top_terms_" + properties.getCapTerms();
+                return query instanceof RegexpQueryBuilder
+                        ? ((RegexpQueryBuilder) query).rewrite(rewrite)
+                        : ((WildcardQueryBuilder) query).rewrite(rewrite);
+            default:
+                record(operation, index, ALLOWED, pattern);
+                return query;
+        }
+    }
+
+    private QueryBuilder reject(SearchOperation operation, String index, String pattern) {
+        record(operation, index, REJECTED, pattern);
+        throw new ValidateException(String.format(AppConstants.PATTERN_IS_TOO_EXPENSIVE, pattern));
+    }
+
+    private void record(SearchOperation operation, String index, String action, String pattern) {
+        LOG.debug("Query guard {} {} pattern [{}] on {}", action, operation.tag(), pattern, index);
+        searchMetrics.recordGuard(operation, index, action);
+    }
+
+    private Cost cost(List<Pattern> branches) {
+        Cost cost = Cost.LITERAL;
+        for (Pattern branch : branches) {
+            final Cost branchCost = cost(branch);
+            if (branchCost.compareTo(cost) > 0) {
+                cost = branchCost;
+            }
+        }
+
+        return cost;
+    }
+
+    private Cost cost(Pattern pattern) {
+        if (!pattern.wildcard) {
+            return Cost.LITERAL;
+        }
+        if (pattern.prefixOnly && !pattern.literalPrefix.isEmpty()) {
+            return Cost.PREFIX;
+        }
+
+        return pattern.literalPrefix.length() >= properties.getMinPrefixLength() ? Cost.BOUNDED : Cost.EXPENSIVE;
+    }
+
+    private static boolean hasLeadingWildcard(List<Pattern> branches) {
+        for (Pattern branch : branches) {
+            if (branch.wildcard && branch.literalPrefix.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes a leading {@code ^} and a trailing unescaped {@code $}, which are literals in Lucene regexps but
+     * are almost always meant as anchors.
+     */
+    static String stripAnchors(String pattern) {
+        int start = pattern.startsWith("^") ? 1 : 0;
+        int end = pattern.length();
+        if (end > start && pattern.charAt(end - 1) == '$' && !isEscaped(pattern, end - 1)) {
+            end--;
+        }
+
+        return pattern.substring(start, end);
+    }
+
+    private static boolean isEscaped(String pattern, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && pattern.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+
+        return backslashes % 2 == 1;
+    }
+
+    static Pattern parseWildcard(String pattern) {
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == '*' || c == '?') {
+                return new Pattern(literal.toString(), true, c == '*' && i == pattern.length() - 1);
+            } else {
+                literal.append(c);
+            }
+        }
+
+        return new Pattern(literal.toString(), false, false);
+    }
+
+    /**
+     * Splits {@code pattern} on top level alternations and parses the literal prefix of every branch.
+     */
+    static List<Pattern> parseRegexp(String pattern) {
+        final List<Pattern> branches = new ArrayList<>();
+        int depth = 0;
+        boolean inClass = false;
+        int start = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                branches.add(parseRegexpBranch(pattern.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        branches.add(parseRegexpBranch(pattern.substring(start)));
+
+        return branches;
+    }
+
+    private static Pattern parseRegexpBranch(String branch) {
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < branch.length(); i++) {
+            final char c = branch.charAt(i);
+            if (REGEXP_SPECIAL.indexOf(c) < 0 || (c == '\\' && i + 1 < branch.length())) {
+                final char next = c == '\\' ? branch.charAt(++i) : c;
+                if (i + 1 < branch.length() && REGEXP_QUANTIFIERS.indexOf(branch.charAt(i + 1)) >= 0) {
+                    // The quantifier applies to this character, so it is not part of the literal prefix
+                    return new Pattern(literal.toString(), true, false);
+                }
+                literal.append(next);
+                continue;
+            }
+
+            final boolean prefixOnly = ".*".equals(branch.substring(i));
+            return new Pattern(literal.toString(), true, prefixOnly);
+        }
+
+        return new Pattern(literal.toString(), false, false);
+    }
+
+    static final class Pattern {
+        private final String literalPrefix;
+        private final boolean wildcard;
+        private final boolean prefixOnly;
+
+        private Pattern(String literalPrefix, boolean wildcard, boolean prefixOnly) {
+            this.literalPrefix = literalPrefix;
+            this.wildcard = wildcard;
+            this.prefixOnly = prefixOnly;
+        }
+    }
+}
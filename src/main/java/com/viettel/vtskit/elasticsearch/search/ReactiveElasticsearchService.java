@@ -0,0 +1,234 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import com.viettel.vtskit.elasticsearch.mapper.DocumentMapper;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link ElasticsearchService} for WebFlux applications. Requests are built by the
+ * same {@link ElasticSearchBuilder} methods, so both services send identical queries. Hits are decoded on the
+ * search executor as they are requested, never on the HTTP client's IO threads.
+ */
+public class ReactiveElasticsearchService {
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveElasticsearchService.class);
+
+    @Autowired
+    private RestHighLevelClient client;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired(required = false)
+    private QueryCostGuard queryCostGuard;
+
+    @Autowired(required = false)
+    private IndexResolver indexResolver;
+
+    private Scheduler scheduler;
+
+    private SearchMetrics searchMetrics = SearchMetrics.NOOP;
+
+    @Autowired
+    public void setSearchExecutor(@Qualifier(AppConstants.SEARCH_EXECUTOR_BEAN_NAME) Executor searchExecutor) {
+        this.scheduler = Schedulers.fromExecutor(searchExecutor);
+    }
+
+    @Autowired(required = false)
+    public void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    public <T> Flux<T> handleSearch(final String index, SearchRequestDTO requestDTO, BoolQueryBuilder boolQuery, Class<T> responseDTO) {
+        return search(SearchOperation.HANDLE, index, requestDTO, () -> ElasticSearchBuilder.buildHandleSearchRequest(
+                index,
+                requestDTO,
+                boolQuery,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> multiSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.MULTI_FIELD, index, requestDTO, () -> ElasticSearchBuilder.buildMultiFieldSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> regexpSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.REGEXP, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildRegexpSearchRequest(index, requestDTO, responseDTO), responseDTO);
+    }
+
+    public <T> Flux<T> fuzzySearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.FUZZY, index, requestDTO, () -> ElasticSearchBuilder.buildFuzzySearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> wildCardSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.WILDCARD, index, requestDTO, () -> queryCostGuard != null
+                ? ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO, queryCostGuard)
+                : ElasticSearchBuilder.buildWildCardSearchRequest(index, requestDTO, responseDTO), responseDTO);
+    }
+
+    public <T> Flux<T> matchPhraseSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.MATCH_PHRASE, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhraseSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> matchPhrasePrefixSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.MATCH_PHRASE_PREFIX, index, requestDTO, () -> ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> boostingSearch(final String index, SearchRequestDTO requestDTO, Class<T> responseDTO) {
+        return search(SearchOperation.BOOSTING, index, requestDTO, () -> ElasticSearchBuilder.buildBoostingSearchRequest(
+                index,
+                requestDTO,
+                responseDTO
+        ), responseDTO);
+    }
+
+    public <T> Flux<T> searchInternal(final SearchRequest request, Class<T> responseDTO) {
+        return searchInternal(request, responseDTO, SearchOperation.CUSTOM);
+    }
+
+    public <T> Flux<T> searchInternal(final SearchRequest request, Class<T> responseDTO, SearchOperation operation) {
+        return searchInternal(request, request == null ? null : indexTag(request), responseDTO, operation);
+    }
+
+    private <T> Flux<T> searchInternal(final SearchRequest request, String index, Class<T> responseDTO, SearchOperation operation) {
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            return Flux.empty();
+        }
+
+        return execute(request, index, operation).flatMapMany(response -> hits(response, responseDTO));
+    }
+
+    /**
+     * Emits every document matching {@code request}, page by page, using a point in time and
+     * {@code search_after}. The page size is the {@code size} of the request. A page is only fetched once the
+     * previous one has been requested downstream, so at most one page is buffered ahead of the subscriber.
+     * The point in time is closed when the flux completes, fails or is cancelled.
+     */
+    public <T> Flux<T> searchAfter(final SearchRequest request, Class<T> responseDTO, String keepAlive) {
+        if (request == null) {
+            LOG.error("Failed to build search request");
+            return Flux.empty();
+        }
+
+        final String index = indexTag(request);
+        final AtomicReference<String> pointInTimeId = new AtomicReference<>();
+        return Mono.<String>create(sink -> {
+                    final Cancellable cancellable = client.openPointInTimeAsync(
+                            PointInTimeCursor.openRequest(request, keepAlive),
+                            RequestOptions.DEFAULT,
+                            ActionListener.wrap(response -> sink.success(response.getPointInTimeId()), sink::error));
+                    sink.onCancel(cancellable::cancel);
+                })
+                .doOnNext(pointInTimeId::set)
+                .flatMapMany(id -> {
+                    final SearchRequest pageRequest = PointInTimeCursor.of(id).apply(request, keepAlive);
+                    return execute(pageRequest, index, SearchOperation.CURSOR).expand(response -> {
+                        pointInTimeId.set(response.pointInTimeId());
+                        final SearchRequest next = PointInTimeCursor.advance(pageRequest, response, keepAlive);
+                        return next == null ? Mono.empty() : execute(next, index, SearchOperation.CURSOR);
+                    });
+                })
+                .concatMap(response -> hits(response, responseDTO), 1)
+                .doFinally(signal -> closePointInTime(pointInTimeId.get()));
+    }
+
+    private <T> Flux<T> search(SearchOperation operation, String index, SearchRequestDTO requestDTO, Supplier<SearchRequest> builder, Class<T> responseDTO) {
+        return Flux.defer(() -> {
+            final long start = System.nanoTime();
+            final SearchRequest request = builder.get();
+            if (request != null && indexResolver != null) {
+                indexResolver.apply(request, index, requestDTO);
+            }
+            searchMetrics.recordBuild(operation, index, System.nanoTime() - start);
+
+            return searchInternal(request, index, responseDTO, operation);
+        });
+    }
+
+    private Mono<SearchResponse> execute(SearchRequest request, String index, SearchOperation operation) {
+        return Mono.<SearchResponse>create(sink -> {
+                    final long start = System.nanoTime();
+                    final Cancellable cancellable = client.searchAsync(request, RequestOptions.DEFAULT, ActionListener.wrap(response -> {
+                        searchMetrics.recordRoundTrip(
+                                operation,
+                                index,
+                                System.nanoTime() - start,
+                                response.getTook() == null ? -1 : response.getTook().millis()
+                        );
+                        sink.success(response);
+                    }, sink::error));
+                    sink.onCancel(cancellable::cancel);
+                })
+                .doOnError(error -> searchMetrics.recordFailure(operation, index, error))
+                .publishOn(scheduler);
+    }
+
+    private <T> Flux<T> hits(SearchResponse response, Class<T> responseDTO) {
+        return Flux.fromArray(response.getHits().getHits()).map(hit -> readHit(hit, responseDTO));
+    }
+
+    private <T> T readHit(SearchHit hit, Class<T> responseDTO) {
+        try {
+            return documentMapper.read(hit, responseDTO);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private void closePointInTime(String pointInTimeId) {
+        if (pointInTimeId == null) {
+            return;
+        }
+
+        // The point in time expires on its own after keep_alive if closing fails
+        client.closePointInTimeAsync(new ClosePointInTimeRequest(pointInTimeId), RequestOptions.DEFAULT,
+                ActionListener.wrap(response -> {
+                }, e -> LOG.debug("Failed to close point in time: {}", e.getMessage())));
+    }
+
+    private static String indexTag(SearchRequest request) {
+        return request.indices().length == 1 ? request.indices()[0] : String.join(",", request.indices());
+    }
+}
@@ -0,0 +1,198 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.slice.SliceBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lazily walks one or more scroll slices. Each slice holds a single batch of hits in memory and fetches the
+ * next batch in the background while the current one is consumed. Splitting hands whole slices to other
+ * threads, so a parallel stream reads every slice concurrently.
+ */
+class ScrollSpliterator<T> implements Spliterator<T> {
+    private final Deque<Slice<T>> slices;
+
+    private ScrollSpliterator(Deque<Slice<T>> slices) {
+        this.slices = slices;
+    }
+
+    static <T> List<Slice<T>> slices(RestHighLevelClient client, Supplier<SearchRequest> requestFactory, int sliceCount,
+                                     TimeValue keepAlive, Function<SearchHit, T> hitMapper) {
+        final List<Slice<T>> slices = new ArrayList<>(Math.max(1, sliceCount));
+        for (int i = 0; i < Math.max(1, sliceCount); i++) {
+            final SearchRequest request = requestFactory.get();
+            if (sliceCount > 1) {
+                request.source().slice(new SliceBuilder(i, sliceCount));
+            }
+            request.scroll(keepAlive);
+            slices.add(new Slice<>(client, request, keepAlive, hitMapper));
+        }
+
+        return slices;
+    }
+
+    static <T> ScrollSpliterator<T> of(List<Slice<T>> slices) {
+        return new ScrollSpliterator<>(new ArrayDeque<>(slices));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (!slices.isEmpty()) {
+            if (slices.peekFirst().tryAdvance(action)) {
+                return true;
+            }
+            slices.pollFirst();
+        }
+
+        return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (slices.size() < 2) {
+            return null;
+        }
+
+        final Deque<Slice<T>> split = new ArrayDeque<>();
+        final int half = slices.size() / 2;
+        for (int i = 0; i < half; i++) {
+            split.addFirst(slices.pollLast());
+        }
+
+        return new ScrollSpliterator<>(split);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | IMMUTABLE;
+    }
+
+    static class Slice<T> implements AutoCloseable {
+        private final RestHighLevelClient client;
+        private final SearchRequest initialRequest;
+        private final TimeValue keepAlive;
+        private final Function<SearchHit, T> hitMapper;
+
+        private SearchHit[] batch;
+        private int position;
+        private String scrollId;
+        private CompletableFuture<SearchResponse> prefetch;
+        private Cancellable prefetchCancellable;
+        private boolean exhausted;
+        private volatile boolean closed;
+
+        Slice(RestHighLevelClient client, SearchRequest initialRequest, TimeValue keepAlive, Function<SearchHit, T> hitMapper) {
+            this.client = client;
+            this.initialRequest = initialRequest;
+            this.keepAlive = keepAlive;
+            this.hitMapper = hitMapper;
+        }
+
+        boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            if (batch == null || position >= batch.length) {
+                if (exhausted || !fetchNextBatch()) {
+                    close();
+                    return false;
+                }
+            }
+
+            action.accept(hitMapper.apply(batch[position++]));
+            return true;
+        }
+
+        private boolean fetchNextBatch() {
+            final SearchResponse response;
+            try {
+                response = prefetch == null
+                        ? client.search(initialRequest, RequestOptions.DEFAULT)
+                        : prefetch.join();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+
+            scrollId = response.getScrollId();
+            batch = response.getHits().getHits();
+            position = 0;
+            prefetch = null;
+            if (batch.length == 0) {
+                exhausted = true;
+                return false;
+            }
+            if (batch.length < initialRequest.source().size()) {
+                exhausted = true;
+            } else {
+                prefetchNextBatch();
+            }
+
+            return true;
+        }
+
+        private void prefetchNextBatch() {
+            final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+            prefetch = future;
+            prefetchCancellable = client.scrollAsync(new SearchScrollRequest(scrollId).scroll(keepAlive), RequestOptions.DEFAULT,
+                    new ActionListener<SearchResponse>() {
+                        @Override
+                        public void onResponse(SearchResponse response) {
+                            future.complete(response);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batch = null;
+            if (prefetch != null && !prefetch.isDone()) {
+                prefetchCancellable.cancel();
+            }
+            if (scrollId != null) {
+                final ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.setScrollIds(Collections.singletonList(scrollId));
+                client.clearScrollAsync(clearScrollRequest, RequestOptions.DEFAULT, ActionListener.wrap(response -> {
+                }, e -> {
+                }));
+            }
+        }
+    }
+}
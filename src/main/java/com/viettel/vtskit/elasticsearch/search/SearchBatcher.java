@@ -0,0 +1,194 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent searches into {@code _msearch} calls. A batch is sent as soon as it holds
+ * {@code maxSize} requests or {@code window} has elapsed since its first request, whichever comes first.
+ * Every returned future completes: requests still queued or in the batch being built when the batcher is closed
+ * are sent on their own, and a batch that cannot be sent fails all of its futures.
+ */
+public class SearchBatcher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchBatcher.class);
+
+    private final RestHighLevelClient client;
+    private final int maxSize;
+    private final long windowNanos;
+    private final BlockingQueue<PendingSearch> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedRequestCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+
+    public SearchBatcher(RestHighLevelClient client, CustomElasticsearchProperties.Batch batch) {
+        this.client = client;
+        this.maxSize = Math.max(1, batch.getMaxSize());
+        this.windowNanos = batch.getWindow().toNanos();
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, batch.getQueueCapacity()));
+        this.flusher = new Thread(this::run, "es-search-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<SearchResponse> submit(SearchRequest request) {
+        final PendingSearch pending = new PendingSearch(request);
+        if (!running || !queue.offer(pending)) {
+            overflowCount.increment();
+            searchDirectly(pending);
+        } else if (!running) {
+            // Closed between the check and the offer, possibly after close() drained the queue
+            drain();
+        }
+
+        return pending.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getBatchedRequestCount() {
+        return batchedRequestCount.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    public long getLastBatchSize() {
+        return lastBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        final long batches = batchCount.sum();
+        return batches == 0 ? 0 : (double) batchedRequestCount.sum() / batches;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        drain();
+    }
+
+    private void drain() {
+        final List<PendingSearch> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(this::searchDirectly);
+    }
+
+    private void run() {
+        while (running) {
+            final List<PendingSearch> batch = new ArrayList<>(maxSize);
+            try {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize) {
+                    final long remaining = deadline - System.nanoTime();
+                    final PendingSearch next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                // Closing: the batch being built is no longer in the queue that close() drains
+                batch.forEach(this::searchDirectly);
+                drain();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOG.error(e.getMessage(), e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+        }
+        drain();
+    }
+
+    private void send(List<PendingSearch> batch) {
+        batchCount.increment();
+        batchedRequestCount.add(batch.size());
+        lastBatchSize.set(batch.size());
+
+        if (batch.size() == 1) {
+            searchDirectly(batch.get(0));
+            return;
+        }
+
+        final MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        batch.forEach(pending -> multiSearchRequest.add(pending.request));
+        client.msearchAsync(multiSearchRequest, RequestOptions.DEFAULT, new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse response) {
+                final MultiSearchResponse.Item[] items = response.getResponses();
+                for (int i = 0; i < batch.size(); i++) {
+                    final MultiSearchResponse.Item item = items[i];
+                    if (item.isFailure()) {
+                        batch.get(i).future.completeExceptionally(item.getFailure());
+                    } else {
+                        batch.get(i).future.complete(item.getResponse());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+        });
+    }
+
+    private void searchDirectly(PendingSearch pending) {
+        try {
+            client.searchAsync(pending.request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    pending.future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    pending.future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            // e.g. the client is already closed
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static class PendingSearch {
+        private final SearchRequest request;
+        private final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+
+        private PendingSearch(SearchRequest request) {
+            this.request = request;
+        }
+    }
+}
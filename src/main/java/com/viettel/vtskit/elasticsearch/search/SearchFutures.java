@@ -0,0 +1,55 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.constants.AppConstants;
+import org.elasticsearch.client.Cancellable;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+final class SearchFutures {
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "es-search-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SearchFutures() {
+    }
+
+    /**
+     * Aborts the underlying HTTP request as soon as the future is completed by anyone other than the
+     * response listener, which covers caller cancellation and timeouts.
+     */
+    static void cancelOnCompletion(CompletableFuture<?> future, Cancellable cancellable) {
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                cancellable.cancel();
+            }
+        });
+    }
+
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return TIMEOUT_SCHEDULER.schedule(task, delay, unit);
+    }
+
+    static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, Duration timeout) {
+        if (timeout == null || timeout.isZero() || timeout.isNegative() || future.isDone()) {
+            return future;
+        }
+
+        final long millis = timeout.toMillis();
+        ScheduledFuture<?> task = TIMEOUT_SCHEDULER.schedule(
+                () -> future.completeExceptionally(new TimeoutException(String.format(AppConstants.SEARCH_TIMED_OUT, millis))),
+                millis,
+                TimeUnit.MILLISECONDS
+        );
+        future.whenComplete((result, error) -> task.cancel(false));
+
+        return future;
+    }
+}
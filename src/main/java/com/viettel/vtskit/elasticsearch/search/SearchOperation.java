@@ -0,0 +1,26 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import java.util.Locale;
+
+public enum SearchOperation {
+    HANDLE,
+    MULTI_FIELD,
+    REGEXP,
+    FUZZY,
+    WILDCARD,
+    MATCH_PHRASE,
+    MATCH_PHRASE_PREFIX,
+    BOOSTING,
+    CURSOR,
+    COUNT,
+    AGGREGATION,
+    AUTOCOMPLETE,
+    FEDERATED,
+    CUSTOM;
+
+    private final String tag = name().toLowerCase(Locale.ROOT);
+
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,237 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of mapped search results, keyed on the target indices, the serialized
+ * {@code SearchSourceBuilder} and the response class. Concurrent misses on the same key share a single
+ * search. Cached lists are unmodifiable and their elements are shared between callers.
+ * <p>
+ * An entry is only known to read the indices it names when its hits came from them. Entries that name a pattern,
+ * an alias or an index that returned no hits are dropped on every {@link #invalidate(String)}, since any index
+ * may be behind them. Searches still running when an index is invalidated return their result but do not cache it.
+ */
+public class SearchResultCache {
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final AsyncCache<Key, Entry> cache;
+    private final Map<String, Duration> ttl;
+    private final long defaultTtlNanos;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(CustomElasticsearchProperties.Cache properties) {
+        this.ttl = properties.getTtl();
+        this.defaultTtlNanos = properties.getDefaultTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((Key key, Entry entry) -> key.weight + entry.weight)
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        return ttlNanos(key);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return ttlNanos(key);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    public static boolean isCacheable(SearchRequest request) {
+        return request.source() != null
+                && request.source().pointInTimeBuilder() == null
+                && request.scroll() == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(SearchRequest request, Class<T> responseDTO, Callable<SearchResponse> search, HitsMapper<T> mapper) throws Exception {
+        final Key key = new Key(request, responseDTO);
+        final long stamp = generation.get();
+        final CompletableFuture<Entry> loading = new CompletableFuture<>();
+        final CompletableFuture<Entry> existing = cache.asMap().putIfAbsent(key, loading);
+        if (existing != null) {
+            try {
+                return (List<T>) existing.get().hits;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            final SearchResponse response = search.call();
+            final List<T> hits = Collections.unmodifiableList(mapper.map(response));
+            loading.complete(new Entry(hits, weigh(response), searched(key, response)));
+            if (generation.get() != stamp) {
+                cache.asMap().remove(key, loading);
+            }
+            return hits;
+        } catch (Exception e) {
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the entries that may read {@code index}, a concrete index name or a wildcard pattern.
+     */
+    public void invalidate(String index) {
+        generation.incrementAndGet();
+        cache.asMap().entrySet().removeIf(mapping -> {
+            final Entry entry = mapping.getValue().getNow(null);
+            return entry != null && mapping.getKey().mayRead(index, entry.searched);
+        });
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.synchronous().invalidateAll();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private long ttlNanos(Key key) {
+        for (String index : key.indices) {
+            final Duration duration = ttl.get(index);
+            if (duration != null) {
+                return duration.toNanos();
+            }
+        }
+
+        return defaultTtlNanos;
+    }
+
+    private static Set<String> searched(Key key, SearchResponse response) {
+        final Set<String> searched = new HashSet<>();
+        for (SearchHit hit : response.getHits().getHits()) {
+            if (hit.getClusterAlias() == null && hit.getIndex() != null) {
+                searched.add(hit.getIndex());
+            }
+        }
+        searched.retainAll(Arrays.asList(key.indices));
+
+        return searched;
+    }
+
+    private static int weigh(SearchResponse response) {
+        long bytes = ENTRY_OVERHEAD;
+        for (SearchHit hit : response.getHits().getHits()) {
+            final BytesReference source = hit.getSourceRef();
+            bytes += ENTRY_OVERHEAD + (source == null ? 0 : source.length());
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    @FunctionalInterface
+    public interface HitsMapper<T> {
+        List<T> map(SearchResponse response) throws IOException;
+    }
+
+    private static final class Entry {
+        private final List<?> hits;
+        private final int weight;
+        private final Set<String> searched;
+
+        private Entry(List<?> hits, int weight, Set<String> searched) {
+            this.hits = hits;
+            this.weight = weight;
+            this.searched = searched;
+        }
+    }
+
+    private static final class Key {
+        private final String[] indices;
+        private final String source;
+        private final Class<?> responseDTO;
+        private final String routing;
+        private final String preference;
+        private final int hash;
+        private final int weight;
+
+        private Key(SearchRequest request, Class<?> responseDTO) {
+            this.indices = request.indices();
+            this.source = request.source().toString();
+            this.responseDTO = responseDTO;
+            this.routing = request.routing();
+            this.preference = request.preference();
+            this.hash = Objects.hash(Arrays.hashCode(indices), source, responseDTO, routing, preference);
+            this.weight = ENTRY_OVERHEAD + source.length() * 2;
+        }
+
+        /**
+         * {@code searched} holds the names of {@link #indices} known to be concrete indices. Any other name may
+         * resolve to {@code index}.
+         */
+        private boolean mayRead(String index, Set<String> searched) {
+            if (indices.length == 0) {
+                return true;
+            }
+            for (String name : indices) {
+                if (!searched.contains(name) || Regex.simpleMatch(index, name)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && responseDTO == key.responseDTO
+                    && Arrays.equals(indices, key.indices)
+                    && Objects.equals(routing, key.routing)
+                    && Objects.equals(preference, key.preference)
+                    && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.storedscripts.PutStoredScriptRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.script.mustache.SearchTemplateRequest;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Query shapes of the {@code multiSearch}, {@code fuzzySearch}, {@code matchPhraseSearch},
+ * {@code matchPhrasePrefixSearch} and {@code boostingSearch} operations, built and serialized once. A shape is
+ * everything in a {@link SearchRequestDTO} but the text, the page and the bounds of the time range: its fields and
+ * weights, sort, time field, hit counting and the response class.
+ * <p>
+ * In {@link CustomElasticsearchProperties.TemplateMode#STORED STORED} mode each shape is registered as a stored
+ * mustache search template by {@link #register}, or in the background the first time it is used, and once it is
+ * stored a search only sends the template id and its parameters. Until then, when a template cannot be stored, or in
+ * {@link CustomElasticsearchProperties.TemplateMode#CLIENT CLIENT} mode, the parameters are written into the
+ * cached JSON of the shape and the body is sent as is; no builder is created per search either way.
+ */
+public class SearchTemplates {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchTemplates.class);
+    private static final Set<SearchOperation> OPERATIONS = EnumSet.of(
+            SearchOperation.MULTI_FIELD,
+            SearchOperation.FUZZY,
+            SearchOperation.MATCH_PHRASE,
+            SearchOperation.MATCH_PHRASE_PREFIX,
+            SearchOperation.BOOSTING
+    );
+
+    private static final String TEXT = "text";
+    private static final String FROM = "from";
+    private static final String SIZE = "size";
+    private static final String TIME_FROM = "time_from";
+    private static final String TIME_TO = "time_to";
+    private static final String[] STRING_PARAMS = {TEXT, TIME_FROM, TIME_TO};
+    private static final String[] NUMBER_PARAMS = {FROM, SIZE};
+
+    private final RestHighLevelClient client;
+    private final CustomElasticsearchProperties.Template properties;
+    private final Cache<List<Object>, Template> templates;
+
+    public SearchTemplates(RestHighLevelClient client, CustomElasticsearchProperties.Template properties) {
+        this.client = client;
+        this.properties = properties;
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .build();
+    }
+
+    public static boolean supports(SearchOperation operation) {
+        return OPERATIONS.contains(operation);
+    }
+
+    /**
+     * Builds the template for the shape of {@code requestDTO} ahead of the first search, typically at startup, and
+     * stores it in {@code STORED} mode, waiting for the cluster. Returns the id of the stored template, or
+     * {@code null} when the shape is rendered on the client or its template is not stored yet.
+     */
+    public String register(SearchOperation operation, SearchRequestDTO requestDTO, Class<?> responseDTO) {
+        final Template template = template(operation, requestDTO, responseDTO);
+        if (template.id != null && template.storing.compareAndSet(false, true)) {
+            template.storedId = store(template.id, template.skeleton);
+        }
+
+        return template.storedId;
+    }
+
+    public long size() {
+        return templates.estimatedSize();
+    }
+
+    /**
+     * Runs the template of the shape of {@code requestDTO} with the indices, routing and options of
+     * {@code searchRequest}, which has no source.
+     */
+    SearchResponse search(SearchOperation operation, SearchRequest searchRequest, SearchRequestDTO requestDTO, Class<?> responseDTO) throws IOException {
+        ElasticSearchBuilder.validateSearchRequest(requestDTO);
+        final Template template = template(operation, requestDTO, responseDTO);
+        storeInBackground(template);
+        final String storedId = template.storedId;
+        if (storedId == null) {
+            return parse(client.getLowLevelClient().performRequest(renderedRequest(searchRequest, template.render(requestDTO))));
+        }
+
+        try {
+            return client.searchTemplate(storedRequest(searchRequest, storedId, requestDTO), RequestOptions.DEFAULT).getResponse();
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() != RestStatus.NOT_FOUND) {
+                throw e;
+            }
+            // The template may have been deleted, or lost with the cluster state: store it again once
+            template.storedId = store(storedId, template.skeleton);
+            return template.storedId != null
+                    ? client.searchTemplate(storedRequest(searchRequest, template.storedId, requestDTO), RequestOptions.DEFAULT).getResponse()
+                    : parse(client.getLowLevelClient().performRequest(renderedRequest(searchRequest, template.render(requestDTO))));
+        }
+    }
+
+    /**
+     * Same as {@link #search}, without blocking. A template missing from the cluster is stored again
+     * asynchronously too.
+     */
+    CompletableFuture<SearchResponse> searchAsync(SearchOperation operation, SearchRequest searchRequest, SearchRequestDTO requestDTO, Class<?> responseDTO) {
+        final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        try {
+            ElasticSearchBuilder.validateSearchRequest(requestDTO);
+            final Template template = template(operation, requestDTO, responseDTO);
+            storeInBackground(template);
+            final String storedId = template.storedId;
+            if (storedId == null) {
+                searchRenderedAsync(searchRequest, template.render(requestDTO), future);
+                return future;
+            }
+
+            client.searchTemplateAsync(storedRequest(searchRequest, storedId, requestDTO), RequestOptions.DEFAULT, ActionListener.wrap(
+                    response -> future.complete(response.getResponse()),
+                    e -> {
+                        if (!(e instanceof ElasticsearchStatusException) || ((ElasticsearchStatusException) e).status() != RestStatus.NOT_FOUND) {
+                            future.completeExceptionally(e);
+                            return;
+                        }
+                        storeAsync(searchRequest, template, storedId, requestDTO, future);
+                    }));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Stores the template again, then retries the search with it, or renders it on the client when it still
+     * cannot be stored.
+     */
+    private void storeAsync(SearchRequest searchRequest, Template template, String storedId, SearchRequestDTO requestDTO,
+                            CompletableFuture<SearchResponse> future) {
+        try {
+            client.putScriptAsync(putRequest(storedId, template.skeleton), RequestOptions.DEFAULT, ActionListener.wrap(
+                    acknowledged -> client.searchTemplateAsync(storedRequest(searchRequest, storedId, requestDTO), RequestOptions.DEFAULT,
+                            ActionListener.wrap(response -> future.complete(response.getResponse()), future::completeExceptionally)),
+                    e -> {
+                        LOG.warn("Failed to store search template {}, rendering it on the client instead", storedId, e);
+                        template.storedId = null;
+                        searchRenderedAsync(searchRequest, template.render(requestDTO), future);
+                    }));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stores the template of a shape the first time it is used, without waiting for the cluster: the searches of
+     * the shape are rendered on the client until it is stored, and for good when it cannot be.
+     */
+    private void storeInBackground(Template template) {
+        if (template.id == null || !template.storing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            client.putScriptAsync(putRequest(template.id, template.skeleton), RequestOptions.DEFAULT, ActionListener.wrap(
+                    acknowledged -> template.storedId = template.id,
+                    e -> LOG.warn("Failed to store search template {}, rendering it on the client instead", template.id, e)));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to store search template {}, rendering it on the client instead", template.id, e);
+        }
+    }
+
+    private static SearchTemplateRequest storedRequest(SearchRequest searchRequest, String storedId, SearchRequestDTO requestDTO) {
+        final SearchTemplateRequest request = new SearchTemplateRequest(searchRequest);
+        request.setScriptType(ScriptType.STORED);
+        request.setScript(storedId);
+        request.setScriptParams(params(requestDTO));
+
+        return request;
+    }
+
+    private void searchRenderedAsync(SearchRequest searchRequest, String body, CompletableFuture<SearchResponse> future) {
+        client.getLowLevelClient().performRequestAsync(renderedRequest(searchRequest, body), new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    future.complete(parse(response));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * {@code _search} request with {@code body} and the URL parameters the high level client would send for
+     * {@code searchRequest}.
+     */
+    static Request renderedRequest(SearchRequest searchRequest, String body) {
+        final Request request = new Request("POST", "/" + encodePath(String.join(",", searchRequest.indices())) + "/_search");
+        if (searchRequest.routing() != null) {
+            request.addParameter("routing", searchRequest.routing());
+        }
+        if (searchRequest.preference() != null) {
+            request.addParameter("preference", searchRequest.preference());
+        }
+        final IndicesOptions indicesOptions = searchRequest.indicesOptions();
+        request.addParameter("ignore_unavailable", Boolean.toString(indicesOptions.ignoreUnavailable()));
+        request.addParameter("allow_no_indices", Boolean.toString(indicesOptions.allowNoIndices()));
+        request.addParameter("expand_wildcards", expandWildcards(indicesOptions));
+        request.addParameter("ignore_throttled", Boolean.toString(indicesOptions.ignoreThrottled()));
+        request.addParameter("search_type", searchRequest.searchType().name().toLowerCase(Locale.ROOT));
+        request.addParameter("batched_reduce_size", Integer.toString(searchRequest.getBatchedReduceSize()));
+        request.addParameter("max_concurrent_shard_requests", Integer.toString(searchRequest.getMaxConcurrentShardRequests()));
+        request.addParameter("ccs_minimize_roundtrips", Boolean.toString(searchRequest.isCcsMinimizeRoundtrips()));
+        if (searchRequest.requestCache() != null) {
+            request.addParameter("request_cache", Boolean.toString(searchRequest.requestCache()));
+        }
+        if (searchRequest.allowPartialSearchResults() != null) {
+            request.addParameter("allow_partial_search_results", Boolean.toString(searchRequest.allowPartialSearchResults()));
+        }
+        if (searchRequest.getPreFilterShardSize() != null) {
+            request.addParameter("pre_filter_shard_size", Integer.toString(searchRequest.getPreFilterShardSize()));
+        }
+        request.setJsonEntity(body);
+
+        return request;
+    }
+
+    private static String expandWildcards(IndicesOptions indicesOptions) {
+        final List<String> states = new ArrayList<>(3);
+        if (indicesOptions.expandWildcardsOpen()) {
+            states.add("open");
+        }
+        if (indicesOptions.expandWildcardsClosed()) {
+            states.add("closed");
+        }
+        if (indicesOptions.expandWildcardsHidden()) {
+            states.add("hidden");
+        }
+
+        return states.isEmpty() ? "none" : String.join(",", states);
+    }
+
+    /**
+     * Encodes a path part like the high level client does, so that date math and other special index names
+     * survive. Slashes are encoded too, as they are never a separator inside a part.
+     */
+    static String encodePath(String part) {
+        try {
+            return new URI(null, null, null, -1, "/" + part, null, null).getRawPath().substring(1).replace("/", "%2F");
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Path part [" + part + "] couldn't be encoded", e);
+        }
+    }
+
+    private static SearchResponse parse(Response response) throws IOException {
+        try (InputStream content = response.getEntity().getContent();
+             XContentParser parser = XContentType.JSON.xContent().createParser(
+                     NamedXContentRegistry.EMPTY, DeprecationHandler.IGNORE_DEPRECATIONS, content)) {
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+
+    private static Map<String, Object> params(SearchRequestDTO requestDTO) {
+        final Map<String, Object> params = new HashMap<>(8);
+        params.put(TEXT, requestDTO.getTextSearch());
+        params.put(FROM, from(requestDTO));
+        params.put(SIZE, requestDTO.getSize());
+        if (requestDTO.getFrom() != null) {
+            params.put(TIME_FROM, requestDTO.getFrom().toString());
+        }
+        if (requestDTO.getTo() != null) {
+            params.put(TIME_TO, requestDTO.getTo().toString());
+        }
+
+        return params;
+    }
+
+    private static int from(SearchRequestDTO requestDTO) {
+        return requestDTO.getPage() <= 0 ? 0 : requestDTO.getPage() * requestDTO.getSize();
+    }
+
+    Template template(SearchOperation operation, SearchRequestDTO requestDTO, Class<?> responseDTO) {
+        if (!supports(operation)) {
+            throw new IllegalArgumentException("No search template for " + operation);
+        }
+
+        final Template template = templates.getIfPresent(shape(operation, requestDTO, responseDTO, false));
+        if (template != null) {
+            return template;
+        }
+        // Copies the fields, so a caller that reuses and changes its lists does not change the cached key
+        return templates.get(shape(operation, requestDTO, responseDTO, true), key -> compile(operation, requestDTO, responseDTO));
+    }
+
+    private static List<Object> shape(SearchOperation operation, SearchRequestDTO requestDTO, Class<?> responseDTO, boolean copy) {
+        return Arrays.asList(
+                operation,
+                responseDTO,
+                copy && requestDTO.getFields() != null ? new ArrayList<>(requestDTO.getFields()) : requestDTO.getFields(),
+                copy && requestDTO.getFieldsAndWeights() != null ? new HashMap<>(requestDTO.getFieldsAndWeights()) : requestDTO.getFieldsAndWeights(),
+                requestDTO.getSlop(),
+                requestDTO.getMaxExpansions(),
+                requestDTO.getSortBy(),
+                requestDTO.getOrderBy(),
+                requestDTO.hasTimeRange() ? requestDTO.getTimeField() : null,
+                requestDTO.hasTimeRange() && requestDTO.getFrom() != null,
+                requestDTO.hasTimeRange() && requestDTO.getTo() != null,
+                requestDTO.getTrackTotalHitsUpTo()
+        );
+    }
+
+    private Template compile(SearchOperation operation, SearchRequestDTO requestDTO, Class<?> responseDTO) {
+        final SearchSourceBuilder source = ElasticSearchBuilder.buildTemplateSource(operation, requestDTO, responseDTO,
+                placeholder(TEXT), placeholder(TIME_FROM), placeholder(TIME_TO));
+        final String json = Strings.toString(source);
+        final String skeleton = "{\"" + FROM + "\":" + placeholder(FROM) + ",\"" + SIZE + "\":" + placeholder(SIZE)
+                + (json.length() > 2 ? "," : "") + json.substring(1);
+
+        if (properties.getMode() != CustomElasticsearchProperties.TemplateMode.STORED) {
+            return new Template(skeleton);
+        }
+        // Only names the template: storing it calls the cluster, which must not happen while the cache computes
+        final byte[] digest = MessageDigests.sha256().digest(skeleton.getBytes(StandardCharsets.UTF_8));
+        return new Template(skeleton, properties.getIdPrefix() + operation.tag() + "-"
+                + MessageDigests.toHexString(digest).substring(0, 16));
+    }
+
+    /**
+     * Returns {@code id} once the template is stored under it, or {@code null} when it could not be stored.
+     */
+    private String store(String id, String source) {
+        try {
+            client.putScript(putRequest(id, source), RequestOptions.DEFAULT);
+            return id;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to store search template {}, rendering it on the client instead", id, e);
+            return null;
+        }
+    }
+
+    private static PutStoredScriptRequest putRequest(String id, String source) throws IOException {
+        XContentBuilder content = XContentFactory.jsonBuilder()
+                .startObject()
+                .startObject("script")
+                .field("lang", "mustache")
+                .field("source", source)
+                .endObject()
+                .endObject();
+
+        return new PutStoredScriptRequest().id(id).content(BytesReference.bytes(content), XContentType.JSON);
+    }
+
+    private static String placeholder(String param) {
+        return "{{" + param + "}}";
+    }
+
+    /**
+     * The JSON of a shape with mustache placeholders, quoted for strings and bare for numbers, which is also the
+     * source of its stored template. It is cut around the placeholders: {@code parts[i]} is followed by the value
+     * of {@code params[i]}. {@code id} names its stored template in {@code STORED} mode, and {@code storedId} is
+     * set once it is stored.
+     */
+    static final class Template {
+        private final String[] parts;
+        private final String[] params;
+        final String skeleton;
+        final String id;
+        private final AtomicBoolean storing = new AtomicBoolean();
+        private volatile String storedId;
+
+        Template(String skeleton) {
+            this(skeleton, null);
+        }
+
+        Template(String skeleton, String id) {
+            final List<String> parts = new ArrayList<>();
+            final List<String> params = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                int next = -1;
+                String param = null;
+                String token = null;
+                for (String candidate : STRING_PARAMS) {
+                    int at = skeleton.indexOf('"' + placeholder(candidate) + '"', start);
+                    if (at >= 0 && (next < 0 || at < next)) {
+                        next = at;
+                        param = candidate;
+                        token = '"' + placeholder(candidate) + '"';
+                    }
+                }
+                for (String candidate : NUMBER_PARAMS) {
+                    int at = skeleton.indexOf(placeholder(candidate), start);
+                    if (at >= 0 && (next < 0 || at < next)) {
+                        next = at;
+                        param = candidate;
+                        token = placeholder(candidate);
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                parts.add(skeleton.substring(start, next));
+                params.add(param);
+                start = next + token.length();
+            }
+            parts.add(skeleton.substring(start));
+
+            this.parts = parts.toArray(new String[0]);
+            this.params = params.toArray(new String[0]);
+            this.skeleton = skeleton;
+            this.id = id;
+        }
+
+        String render(SearchRequestDTO requestDTO) {
+            final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+            final StringBuilder body = new StringBuilder(skeleton.length() + requestDTO.getTextSearch().length() + 64);
+            for (int i = 0; i < params.length; i++) {
+                body.append(parts[i]);
+                switch (params[i]) {
+                    case TEXT:
+                        body.append('"').append(encoder.quoteAsString(requestDTO.getTextSearch())).append('"');
+                        break;
+                    case FROM:
+                        body.append(from(requestDTO));
+                        break;
+                    case SIZE:
+                        body.append(requestDTO.getSize());
+                        break;
+                    case TIME_FROM:
+                        body.append('"').append(requestDTO.getFrom()).append('"');
+                        break;
+                    default:
+                        body.append('"').append(requestDTO.getTo()).append('"');
+                        break;
+                }
+            }
+
+            return body.append(parts[parts.length - 1]).toString();
+        }
+    }
+}
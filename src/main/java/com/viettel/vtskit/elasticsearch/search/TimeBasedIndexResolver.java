@@ -0,0 +1,128 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prunes time based indices ({@code logs-2024.01.31}, {@code metrics-2024.01}...) whose period does not
+ * overlap the time range of the request. The period of an index is read from the date at the end of its name,
+ * using {@code date-pattern}; its length (hour, day, month or year) is the smallest unit of the pattern. Indices
+ * without such a date are always searched.
+ * <p>
+ * The concrete indices behind each index expression or alias are cached and reloaded in the background every
+ * {@code refresh-interval}.
+ */
+public class TimeBasedIndexResolver implements IndexResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(TimeBasedIndexResolver.class);
+
+    private final RestHighLevelClient client;
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone;
+    private final ChronoUnit period;
+    private final int suffixLength;
+    private final LoadingCache<String, List<String>> indices;
+
+    public TimeBasedIndexResolver(RestHighLevelClient client, CustomElasticsearchProperties.IndexResolver properties) {
+        this.client = client;
+        this.zone = properties.getZone();
+        this.formatter = new DateTimeFormatterBuilder()
+                .appendPattern(properties.getDatePattern())
+                .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+                .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+                .toFormatter();
+        this.period = period(properties.getDatePattern());
+        this.suffixLength = formatter.format(LocalDateTime.of(2000, 1, 1, 0, 0)).length();
+        this.indices = Caffeine.newBuilder()
+                .refreshAfterWrite(properties.getRefreshInterval())
+                .expireAfterAccess(properties.getRefreshInterval().multipliedBy(10))
+                .build(this::load);
+    }
+
+    @Override
+    public String[] resolve(String index, SearchRequestDTO request) {
+        if (!request.hasTimeRange()) {
+            return new String[]{index};
+        }
+
+        final List<String> concreteIndices;
+        try {
+            concreteIndices = indices.get(index);
+        } catch (Exception e) {
+            LOG.warn("Failed to resolve indices of {}, searching all of them: {}", index, e.getMessage());
+            return new String[]{index};
+        }
+
+        final List<String> matching = new ArrayList<>(concreteIndices.size());
+        for (String concreteIndex : concreteIndices) {
+            if (overlaps(concreteIndex, request.getFrom(), request.getTo())) {
+                matching.add(concreteIndex);
+            }
+        }
+
+        return matching.isEmpty() ? new String[]{index} : matching.toArray(new String[0]);
+    }
+
+    public void refresh(String index) {
+        indices.refresh(index);
+    }
+
+    private List<String> load(String index) throws Exception {
+        final GetAliasesRequest request = new GetAliasesRequest().indices(index);
+        request.indicesOptions(IndicesOptions.lenientExpandOpen());
+        final List<String> names = new ArrayList<>(client.indices().getAlias(request, RequestOptions.DEFAULT).getAliases().keySet());
+        Collections.sort(names);
+
+        return names;
+    }
+
+    boolean overlaps(String index, Instant from, Instant to) {
+        if (index.length() < suffixLength) {
+            return true;
+        }
+
+        final Instant start;
+        try {
+            start = LocalDateTime.parse(index.substring(index.length() - suffixLength), formatter).atZone(zone).toInstant();
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+        final Instant end = start.atZone(zone).plus(1, period).toInstant();
+
+        return (to == null || !start.isAfter(to)) && (from == null || end.isAfter(from));
+    }
+
+    private static ChronoUnit period(String pattern) {
+        if (pattern.indexOf('H') >= 0 || pattern.indexOf('k') >= 0) {
+            return ChronoUnit.HOURS;
+        }
+        if (pattern.indexOf('d') >= 0) {
+            return ChronoUnit.DAYS;
+        }
+        if (pattern.indexOf('M') >= 0) {
+            return ChronoUnit.MONTHS;
+        }
+
+        return ChronoUnit.YEARS;
+    }
+}
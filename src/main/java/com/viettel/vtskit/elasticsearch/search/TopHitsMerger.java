@@ -0,0 +1,102 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of hit lists that are each already in the order of the request: only the heads of the lists are
+ * kept in a heap, so taking the top {@code k} costs {@code k log n} comparisons for {@code n} lists.
+ */
+final class TopHitsMerger {
+
+    private TopHitsMerger() {
+    }
+
+    /**
+     * Hit order of {@code source}: its sort clauses, compared on the sort values of the hits, or the score when
+     * it has none. Missing values sort last, as they do in Elasticsearch by default.
+     */
+    static Comparator<SearchHit> order(SearchSourceBuilder source) {
+        final List<SortBuilder<?>> sorts = source == null ? null : source.sorts();
+        if (sorts == null || sorts.isEmpty()) {
+            return (a, b) -> Float.compare(b.getScore(), a.getScore());
+        }
+
+        final boolean[] descending = new boolean[sorts.size()];
+        for (int i = 0; i < descending.length; i++) {
+            descending[i] = sorts.get(i).order() == SortOrder.DESC;
+        }
+        return (a, b) -> {
+            final Object[] left = a.getSortValues();
+            final Object[] right = b.getSortValues();
+            for (int i = 0; i < descending.length && i < left.length && i < right.length; i++) {
+                if (left[i] == null || right[i] == null) {
+                    if (left[i] != right[i]) {
+                        return left[i] == null ? 1 : -1;
+                    }
+                    continue;
+                }
+                final int compared = compareValues(left[i], right[i]);
+                if (compared != 0) {
+                    return descending[i] ? -compared : compared;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Returns the hits ranked {@code from} to {@code from + size} over all lists, each as {@code [list, position]}.
+     * Ties are broken by list, then position, so the merge is stable.
+     */
+    static List<int[]> merge(List<SearchHit[]> lists, Comparator<SearchHit> order, int from, int size) {
+        final PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, lists.size()), (a, b) -> {
+            final int compared = order.compare(lists.get(a[0])[a[1]], lists.get(b[0])[b[1]]);
+            return compared != 0 ? compared : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < lists.size(); i++) {
+            if (lists.get(i).length > 0) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        final List<int[]> merged = new ArrayList<>(size);
+        for (int rank = 0; rank < from + size && !heads.isEmpty(); rank++) {
+            final int[] head = heads.poll();
+            if (rank >= from) {
+                merged.add(new int[]{head[0], head[1]});
+            }
+            if (++head[1] < lists.get(head[0]).length) {
+                heads.add(head);
+            }
+        }
+
+        return merged;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+            }
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            return ((Comparable) left).compareTo(right);
+        }
+
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+}
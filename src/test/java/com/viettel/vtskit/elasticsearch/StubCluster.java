@@ -0,0 +1,151 @@
+package com.viettel.vtskit.elasticsearch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local HTTP server answering a {@link RestHighLevelClient} with canned responses, for tests that need the real
+ * request and response parsing of the client.
+ */
+public class StubCluster implements Closeable {
+	private static final String INFO = "{\"name\":\"stub\",\"cluster_name\":\"stub\",\"cluster_uuid\":\"stub\","
+			+ "\"version\":{\"number\":\"7.15.2\",\"build_flavor\":\"default\",\"build_type\":\"tar\",\"build_hash\":\"stub\","
+			+ "\"build_date\":\"2021-11-04T14:04:42.515624022Z\",\"build_snapshot\":false,\"lucene_version\":\"8.9.0\","
+			+ "\"minimum_wire_compatibility_version\":\"6.8.0\",\"minimum_index_compatibility_version\":\"6.0.0-beta1\"},"
+			+ "\"tagline\":\"You Know, for Search\"}";
+
+	public static final class Request {
+		public final String method;
+		public final String path;
+		public final String query;
+		public final String body;
+
+		private Request(String method, String path, String query, String body) {
+			this.method = method;
+			this.path = path;
+			this.query = query;
+			this.body = body;
+		}
+	}
+
+	public static final class Reply {
+		public final int status;
+		public final String body;
+
+		private Reply(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		public static Reply ok(String body) {
+			return new Reply(200, body);
+		}
+
+		public static Reply status(int status, String type) {
+			return new Reply(status, "{\"error\":{\"type\":\"" + type + "\",\"reason\":\"" + type + "\"},\"status\":" + status + "}");
+		}
+	}
+
+	@FunctionalInterface
+	public interface Responder {
+		Reply reply(Request request) throws Exception;
+	}
+
+	private final HttpServer server;
+	private final RestHighLevelClient client;
+	private final List<Request> requests = new CopyOnWriteArrayList<>();
+	private volatile Responder responder = request -> Reply.status(500, "no_responder");
+
+	public StubCluster() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		client = new RestHighLevelClient(RestClient.builder(new HttpHost("127.0.0.1", server.getAddress().getPort(), "http")));
+	}
+
+	public RestHighLevelClient client() {
+		return client;
+	}
+
+	public void respond(Responder responder) {
+		this.responder = responder;
+	}
+
+	/**
+	 * Requests received so far, other than the product check of the client.
+	 */
+	public List<Request> requests() {
+		return requests;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		final Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+				exchange.getRequestURI().getRawQuery(), read(exchange.getRequestBody()));
+		Reply reply;
+		if ("GET".equals(request.method) && "/".equals(request.path)) {
+			reply = Reply.ok(INFO);
+		} else {
+			requests.add(request);
+			try {
+				reply = responder.reply(request);
+			} catch (Exception e) {
+				reply = Reply.status(500, e.getClass().getSimpleName());
+			}
+		}
+
+		final byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+		exchange.getResponseHeaders().add("X-Elastic-Product", "Elasticsearch");
+		exchange.sendResponseHeaders(reply.status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String read(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Search response body with one hit per id, each with {@code {"name": id}} as its source and its position as
+	 * its sort value.
+	 */
+	public static String searchResponse(String pointInTimeId, String index, String... ids) {
+		final StringBuilder hits = new StringBuilder();
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				hits.append(',');
+			}
+			hits.append("{\"_index\":\"").append(index).append("\",\"_type\":\"_doc\",\"_id\":\"").append(ids[i])
+					.append("\",\"_score\":1.0,\"_source\":{\"name\":\"").append(ids[i]).append("\"},\"sort\":[").append(i).append("]}");
+		}
+		return "{" + (pointInTimeId == null ? "" : "\"pit_id\":\"" + pointInTimeId + "\",")
+				+ "\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+				+ "\"hits\":{\"total\":{\"value\":" + ids.length + ",\"relation\":\"eq\"},\"max_score\":1.0,\"hits\":[" + hits + "]}}";
+	}
+
+	@Override
+	public void close() throws IOException {
+		client.close();
+		server.stop(0);
+	}
+}
@@ -0,0 +1,168 @@
+package com.viettel.vtskit.elasticsearch.bulk;
+
+import com.viettel.vtskit.elasticsearch.StubCluster;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.mapper.JacksonDocumentMapper;
+import com.viettel.vtskit.elasticsearch.search.SearchResultCache;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkIndexerTests {
+
+	private static final String CREATED = "{\"index\":{\"_index\":\"%s\",\"_type\":\"_doc\",\"_id\":\"1\",\"_version\":1,"
+			+ "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1,\"status\":201}}";
+	private static final String REJECTED = "{\"index\":{\"_index\":\"%s\",\"_type\":\"_doc\",\"_id\":\"1\",\"status\":429,"
+			+ "\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"rejected\"}}}";
+
+	private StubCluster cluster;
+	private final SearchResultCache cache = new SearchResultCache(new CustomElasticsearchProperties.Cache());
+	private final AtomicInteger searches = new AtomicInteger();
+	private final List<BulkItemResponse> failedItems = new CopyOnWriteArrayList<>();
+	private final List<Throwable> failedBulks = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void startCluster() throws Exception {
+		cluster = new StubCluster();
+	}
+
+	@After
+	public void stopCluster() throws Exception {
+		cluster.close();
+	}
+
+	private BulkIndexer indexer(int maxRetries) {
+		CustomElasticsearchProperties.Bulk bulk = new CustomElasticsearchProperties.Bulk();
+		bulk.setFlushInterval(null);
+		bulk.setConcurrentRequests(0);
+		bulk.setMaxRetries(maxRetries);
+		bulk.setBackoffInitialDelay(Duration.ofMillis(1));
+		return new BulkIndexer(cluster.client(), JacksonDocumentMapper.MAPPER, bulk, new BulkFailureListener() {
+			@Override
+			public void onItemFailure(BulkItemResponse item) {
+				failedItems.add(item);
+			}
+
+			@Override
+			public void onBulkFailure(BulkRequest request, Throwable failure) {
+				failedBulks.add(failure);
+			}
+		}, cache);
+	}
+
+	private static String bulkResponse(String... items) {
+		boolean errors = false;
+		for (String item : items) {
+			errors |= item.contains("\"error\"");
+		}
+		return "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + String.join(",", items) + "]}";
+	}
+
+	private void cacheSearch(String target) throws Exception {
+		cache.get(new SearchRequest(target).source(new SearchSourceBuilder()), String.class, () -> {
+			searches.incrementAndGet();
+			return cluster.client().search(new SearchRequest(target), RequestOptions.DEFAULT);
+		}, response -> Collections.singletonList("hit"));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertTrue("timed out", System.nanoTime() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	private void respond(String bulk) {
+		cluster.respond(request -> request.path.endsWith("/_search")
+				? StubCluster.Reply.ok(StubCluster.searchResponse(null, request.path.startsWith("/laptop") ? "laptop" : "phone-v2", "1"))
+				: StubCluster.Reply.ok(bulk));
+	}
+
+	@Test
+	public void invalidatesTheConcreteIndicesOfTheResponse() throws Exception {
+		respond(bulkResponse(String.format(CREATED, "phone-v2")));
+		cacheSearch("phone-v2");
+		cacheSearch("laptop");
+
+		try (BulkIndexer indexer = indexer(0)) {
+			indexer.index("phones", "1", Collections.singletonMap("name", "Pixel"));
+			indexer.flush();
+			await(() -> indexer.getIndexedCount() == 1);
+		}
+
+		cacheSearch("phone-v2");
+		cacheSearch("laptop");
+		assertEquals(3, searches.get());
+	}
+
+	@Test
+	public void invalidatesTheRequestIndicesOfAFailedBulk() throws Exception {
+		cluster.respond(request -> request.path.endsWith("/_search")
+				? StubCluster.Reply.ok(StubCluster.searchResponse(null, "laptop", "1"))
+				: StubCluster.Reply.status(500, "internal_server_error"));
+		cacheSearch("laptop");
+
+		try (BulkIndexer indexer = indexer(0)) {
+			indexer.delete("laptop", "1");
+			indexer.flush();
+			await(() -> indexer.getFailedCount() == 1);
+		}
+
+		assertEquals(1, failedBulks.size());
+		cacheSearch("laptop");
+		assertEquals(2, searches.get());
+	}
+
+	@Test
+	public void retriesRejectedItemsWithBackoff() throws Exception {
+		AtomicInteger bulks = new AtomicInteger();
+		cluster.respond(request -> StubCluster.Reply.ok(bulks.incrementAndGet() == 1
+				? bulkResponse(String.format(REJECTED, "phone"))
+				: bulkResponse(String.format(CREATED, "phone"))));
+
+		try (BulkIndexer indexer = indexer(3)) {
+			indexer.index("phone", "1", Collections.singletonMap("name", "Pixel"));
+			indexer.flush();
+			await(() -> indexer.getIndexedCount() == 1);
+			assertEquals(0, indexer.getFailedCount());
+		}
+
+		assertEquals(2, bulks.get());
+		assertTrue(failedItems.isEmpty());
+	}
+
+	@Test
+	public void reportsItemsStillRejectedAfterTheLastRetry() throws Exception {
+		AtomicInteger bulks = new AtomicInteger();
+		cluster.respond(request -> {
+			bulks.incrementAndGet();
+			return StubCluster.Reply.ok(bulkResponse(String.format(REJECTED, "phone")));
+		});
+
+		try (BulkIndexer indexer = indexer(2)) {
+			indexer.index("phone", "1", Collections.singletonMap("name", "Pixel"));
+			indexer.flush();
+			await(() -> indexer.getFailedCount() == 1);
+		}
+
+		assertEquals(3, bulks.get());
+		assertEquals(1, failedItems.size());
+		assertEquals(429, failedItems.get(0).status().getStatus());
+	}
+}
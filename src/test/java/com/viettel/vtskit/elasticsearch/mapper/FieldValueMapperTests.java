@@ -0,0 +1,159 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.elasticsearch.common.document.DocumentField;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FieldValueMapperTests {
+
+	public enum Status {
+		ACTIVE,
+		RETIRED
+	}
+
+	@FetchFields
+	public static class Primitives {
+		public int stock;
+		public long price;
+		public double rating;
+		public float weight;
+		public short year;
+		public byte grade;
+		public boolean available;
+		private int views = -1;
+
+		public int getViews() {
+			return views;
+		}
+
+		public void setViews(int views) {
+			this.views = views;
+		}
+	}
+
+	@FetchFields(FetchFields.From.STORED_FIELDS)
+	public static class Boxed {
+		public Integer stock;
+		public Long price;
+		public Double rating;
+		public Boolean available;
+		public String name;
+		public BigDecimal cost;
+		public Status status;
+		public Instant releasedAt;
+		public Date updatedAt;
+		@JsonProperty("sku")
+		public String stockKeepingUnit;
+	}
+
+	@FetchFields
+	public static class SnakeCase {
+		public String modelName;
+		public long unitPrice;
+	}
+
+	private static Map<String, DocumentField> fields(Object... nameAndValues) {
+		Map<String, DocumentField> fields = new HashMap<>();
+		for (int i = 0; i < nameAndValues.length; i += 2) {
+			String name = (String) nameAndValues[i];
+			Object value = nameAndValues[i + 1];
+			fields.put(name, new DocumentField(name, value instanceof Object[] ? Arrays.asList((Object[]) value) : Collections.singletonList(value)));
+		}
+		return fields;
+	}
+
+	private final FieldValueMapper mapper = new FieldValueMapper(JacksonDocumentMapper.MAPPER);
+
+	@Test
+	public void setsPrimitives() {
+		Primitives primitives = mapper.readFields(fields(
+				"stock", 3, "price", 1299L, "rating", 4.5d, "weight", 0.2f,
+				"year", 2024L, "grade", 7, "available", true, "views", "42"), Primitives.class);
+		assertEquals(3, primitives.stock);
+		assertEquals(1299L, primitives.price);
+		assertEquals(4.5d, primitives.rating, 0);
+		assertEquals(0.2f, primitives.weight, 0);
+		assertEquals(2024, primitives.year);
+		assertEquals(7, primitives.grade);
+		assertTrue(primitives.available);
+		assertEquals(42, primitives.getViews());
+	}
+
+	@Test
+	public void setsBoxedAndConvertedValues() {
+		Boxed boxed = mapper.readFields(fields(
+				"stock", 3L, "price", "1299", "rating", 4, "available", "true", "name", "Pixel",
+				"cost", 12.5d, "status", "RETIRED", "releasedAt", "1700000000000",
+				"updatedAt", "2024-01-31T10:00:00Z", "sku", "PX-8"), Boxed.class);
+		assertEquals(Integer.valueOf(3), boxed.stock);
+		assertEquals(Long.valueOf(1299), boxed.price);
+		assertEquals(Double.valueOf(4), boxed.rating);
+		assertEquals(Boolean.TRUE, boxed.available);
+		assertEquals("Pixel", boxed.name);
+		assertEquals(new BigDecimal("12.5"), boxed.cost);
+		assertEquals(Status.RETIRED, boxed.status);
+		assertEquals(Instant.ofEpochMilli(1700000000000L), boxed.releasedAt);
+		assertEquals(Date.from(Instant.parse("2024-01-31T10:00:00Z")), boxed.updatedAt);
+		assertEquals("PX-8", boxed.stockKeepingUnit);
+	}
+
+	@Test
+	public void usesTheFirstOfSeveralValues() {
+		Boxed boxed = mapper.readFields(fields("name", new Object[]{"first", "second"}, "stock", new Object[]{1, 2}), Boxed.class);
+		assertEquals("first", boxed.name);
+		assertEquals(Integer.valueOf(1), boxed.stock);
+	}
+
+	@Test
+	public void leavesMissingFieldsAtTheirDefault() {
+		Primitives primitives = mapper.readFields(fields("stock", 3, "price", new Object[]{null}), Primitives.class);
+		assertEquals(3, primitives.stock);
+		assertEquals(0L, primitives.price);
+		assertEquals(-1, primitives.getViews());
+		assertFalse(primitives.available);
+
+		Boxed boxed = mapper.readFields(new HashMap<>(), Boxed.class);
+		assertNull(boxed.stock);
+		assertNull(boxed.releasedAt);
+	}
+
+	@Test
+	public void namesFieldsWithTheConfiguredMapper() {
+		FieldValueMapper snakeCase = new FieldValueMapper(new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE));
+		String[] names = snakeCase.fieldsOf(SnakeCase.class);
+		Arrays.sort(names);
+		assertArrayEquals(new String[]{"model_name", "unit_price"}, names);
+
+		SnakeCase read = snakeCase.readFields(fields("model_name", "Pixel", "unit_price", 599), SnakeCase.class);
+		assertEquals("Pixel", read.modelName);
+		assertEquals(599L, read.unitPrice);
+	}
+
+	@Test
+	public void fetchesDatesInEpochMillis() {
+		String[] fields = FieldValueMapper.fields(Boxed.class);
+		String[] formats = FieldValueMapper.formats(Boxed.class);
+		for (int i = 0; i < fields.length; i++) {
+			boolean date = fields[i].equals("releasedAt") || fields[i].equals("updatedAt");
+			assertEquals(fields[i], date ? FieldValueMapper.DATE_FORMAT : null, formats[i]);
+		}
+		assertEquals(FetchFields.From.STORED_FIELDS, FieldValueMapper.from(Boxed.class));
+		assertFalse(FieldValueMapper.isFieldFetch(String.class));
+	}
+}
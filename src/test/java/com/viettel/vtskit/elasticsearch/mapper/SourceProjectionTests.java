@@ -0,0 +1,80 @@
+package com.viettel.vtskit.elasticsearch.mapper;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SourceProjectionTests {
+
+	public static class Brand {
+		public String displayName;
+	}
+
+	public static class Phone {
+		public String modelName;
+		@JsonProperty("sku")
+		public String stockKeepingUnit;
+		@JsonIgnore
+		public String internalNote;
+		public Brand brand;
+	}
+
+	public static class Loose {
+		public String name;
+		public Map<String, Object> attributes;
+	}
+
+	@After
+	public void restoreDefaultMapper() {
+		SourceProjection.use(new JacksonDocumentMapper());
+	}
+
+	private static void assertIncludes(String[] includes, String... expected) {
+		assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(Arrays.asList(includes)));
+	}
+
+	@Test
+	public void namesPathsLikeTheDefaultMapper() {
+		assertIncludes(new SourceProjection(JacksonDocumentMapper.MAPPER).includesOf(Phone.class),
+				"modelName", "sku", "brand.displayName");
+		assertIncludes(new SourceProjection(JacksonDocumentMapper.MAPPER).includesOf(Loose.class), "name", "attributes");
+	}
+
+	@Test
+	public void followsTheNamingStrategyOfTheConfiguredMapper() {
+		ObjectMapper snakeCase = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+		SourceProjection.use(new JacksonDocumentMapper(snakeCase));
+		assertIncludes(SourceProjection.includes(Phone.class), "model_name", "sku", "brand.display_name");
+
+		SourceProjection.use(new JacksonDocumentMapper());
+		assertIncludes(SourceProjection.includes(Phone.class), "modelName", "sku", "brand.displayName");
+	}
+
+	@Test
+	public void fetchesTheWholeSourceWithoutJackson() {
+		SourceProjection.use(new DocumentMapper() {
+			@Override
+			public <T> T read(BytesReference source, Class<T> responseDTO) {
+				return null;
+			}
+		});
+		assertNull(SourceProjection.includes(Phone.class));
+	}
+
+	@Test
+	public void fetchesTheWholeSourceOfLeafTypes() {
+		assertNull(SourceProjection.includes(String.class));
+		assertNull(SourceProjection.includes(Map.class));
+	}
+}
@@ -0,0 +1,83 @@
+package com.viettel.vtskit.elasticsearch.resilience;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AimdLimiterTests {
+
+	private static AimdLimiter limiter(int initial, int min, int max, double backoff) {
+		CustomElasticsearchProperties.Limiter properties = new CustomElasticsearchProperties.Limiter();
+		properties.setInitialLimit(initial);
+		properties.setMinLimit(min);
+		properties.setMaxLimit(max);
+		properties.setBackoffRatio(backoff);
+		return new AimdLimiter(properties);
+	}
+
+	@Test
+	public void rejectsAboveTheLimit() {
+		AimdLimiter limiter = limiter(2, 1, 10, 0.5);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertEquals(2, limiter.getInFlight());
+	}
+
+	@Test
+	public void growsByOneOnlyWhenHalfUsed() {
+		AimdLimiter limiter = limiter(4, 1, 10, 0.5);
+		limiter.tryAcquire();
+		limiter.release(false);
+		assertEquals(4, limiter.getLimit());
+
+		limiter.tryAcquire();
+		limiter.tryAcquire();
+		limiter.release(false);
+		assertEquals(5, limiter.getLimit());
+		limiter.release(false);
+		assertEquals(5, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void backsOffMultiplicatively() {
+		AimdLimiter limiter = limiter(10, 2, 20, 0.5);
+		limiter.tryAcquire();
+		limiter.release(true);
+		assertEquals(5, limiter.getLimit());
+		limiter.tryAcquire();
+		limiter.release(true);
+		assertEquals(2, limiter.getLimit());
+		limiter.tryAcquire();
+		limiter.release(true);
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void keepsFractionalLimitBetweenBackoffs() {
+		AimdLimiter limiter = limiter(10, 1, 20, 0.9);
+		limiter.tryAcquire();
+		limiter.release(true);
+		assertEquals(9, limiter.getLimit());
+		limiter.tryAcquire();
+		limiter.release(true);
+		assertEquals(8, limiter.getLimit());
+	}
+
+	@Test
+	public void staysWithinBounds() {
+		AimdLimiter limiter = limiter(1, 1, 2, 0.5);
+		for (int i = 0; i < 5; i++) {
+			limiter.tryAcquire();
+			limiter.release(false);
+		}
+		assertEquals(2, limiter.getLimit());
+
+		assertEquals(3, limiter(50, 0, 3, 0.5).getLimit());
+		assertEquals(4, limiter(0, 4, 3, 0.5).getLimit());
+	}
+}
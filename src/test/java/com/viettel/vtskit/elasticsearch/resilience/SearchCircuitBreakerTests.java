@@ -0,0 +1,120 @@
+package com.viettel.vtskit.elasticsearch.resilience;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchCircuitBreakerTests {
+
+	private static final long OPEN = Duration.ofSeconds(30).toNanos();
+
+	private final CustomElasticsearchProperties.CircuitBreaker properties = new CustomElasticsearchProperties.CircuitBreaker();
+
+	private SearchCircuitBreaker breaker(int windowSize, int minimumCalls, int probes) {
+		properties.setWindowSize(windowSize);
+		properties.setMinimumCalls(minimumCalls);
+		properties.setHalfOpenProbes(probes);
+		properties.setOpenDuration(Duration.ofNanos(OPEN));
+		return new SearchCircuitBreaker(properties);
+	}
+
+	private static void record(SearchCircuitBreaker breaker, boolean failure, int times) {
+		for (int i = 0; i < times; i++) {
+			assertEquals(SearchCircuitBreaker.PERMITTED, breaker.tryAcquire(0));
+			breaker.onResult(false, failure, false, 0);
+		}
+	}
+
+	@Test
+	public void waitsForMinimumCalls() {
+		SearchCircuitBreaker breaker = breaker(10, 4, 1);
+		record(breaker, true, 3);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+		record(breaker, true, 1);
+		assertEquals(SearchCircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(SearchCircuitBreaker.REJECTED, breaker.tryAcquire(OPEN - 1));
+	}
+
+	@Test
+	public void opensOnSlowCalls() {
+		properties.setSlowCallRateThreshold(0.5);
+		SearchCircuitBreaker breaker = breaker(4, 2, 1);
+		breaker.onResult(false, false, false, 0);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+		breaker.onResult(false, false, true, 0);
+		assertEquals(SearchCircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void evictsOldestCallsFromTheWindow() {
+		SearchCircuitBreaker breaker = breaker(4, 4, 1);
+		record(breaker, true, 1);
+		record(breaker, false, 3);
+		// failures 1 of 4, then the failure is evicted
+		record(breaker, false, 1);
+		record(breaker, true, 1);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+		// window is now [ok, ok, ok, fail] plus one more failure evicting an ok: 2 of 4
+		record(breaker, true, 1);
+		assertEquals(SearchCircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void limitsAndClosesOnProbes() {
+		SearchCircuitBreaker breaker = breaker(2, 2, 2);
+		record(breaker, true, 2);
+
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+		assertEquals(SearchCircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+		assertEquals(SearchCircuitBreaker.REJECTED, breaker.tryAcquire(OPEN));
+
+		breaker.onResult(true, false, false, OPEN);
+		// a successful probe still counts against the probe budget
+		assertEquals(SearchCircuitBreaker.REJECTED, breaker.tryAcquire(OPEN));
+		breaker.onResult(true, false, false, OPEN);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+
+		// the window was reset on close
+		record(breaker, true, 1);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void reopensOnFailedProbe() {
+		SearchCircuitBreaker breaker = breaker(2, 2, 2);
+		record(breaker, true, 2);
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+		breaker.onResult(true, true, false, OPEN);
+		assertEquals(SearchCircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(SearchCircuitBreaker.REJECTED, breaker.tryAcquire(2 * OPEN - 1));
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(2 * OPEN));
+	}
+
+	@Test
+	public void returnsUnsentProbes() {
+		SearchCircuitBreaker breaker = breaker(1, 1, 1);
+		record(breaker, true, 1);
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+		assertEquals(SearchCircuitBreaker.REJECTED, breaker.tryAcquire(OPEN));
+		breaker.releaseProbe();
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+	}
+
+	@Test
+	public void ignoresLateResultsOutsideTheirState() {
+		SearchCircuitBreaker breaker = breaker(2, 2, 1);
+		record(breaker, true, 2);
+		// a search sent while closed and finishing while open does not count
+		breaker.onResult(false, false, false, 1);
+		assertEquals(SearchCircuitBreaker.PROBE, breaker.tryAcquire(OPEN));
+		breaker.onResult(true, false, false, OPEN);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+		// a stale probe result is ignored once closed
+		breaker.onResult(true, true, false, OPEN);
+		assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+	}
+}
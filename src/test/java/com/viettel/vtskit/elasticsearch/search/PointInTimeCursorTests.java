@@ -0,0 +1,206 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.StubCluster;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.mapper.JacksonDocumentMapper;
+import com.viettel.vtskit.elasticsearch.request.PagedRequestDTO;
+import com.viettel.vtskit.elasticsearch.response.CursorPageDTO;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.ScoreSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PointInTimeCursorTests {
+
+	private static SearchResponse response(String pointInTimeId, Object[]... sortValues) {
+		SearchHit[] hits = new SearchHit[sortValues.length];
+		for (int i = 0; i < hits.length; i++) {
+			hits[i] = new SearchHit(i);
+			DocValueFormat[] formats = new DocValueFormat[sortValues[i].length];
+			Arrays.fill(formats, DocValueFormat.RAW);
+			hits[i].sortValues(sortValues[i], formats);
+		}
+		SearchHits searchHits = new SearchHits(hits, new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), 1f);
+		return new SearchResponse(new SearchResponseSections(searchHits, null, null, false, null, null, 1),
+				null, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY, pointInTimeId);
+	}
+
+	private static SearchRequest request(int size) {
+		return new SearchRequest("phone")
+				.routing("tenant-42")
+				.preference("tenant-42")
+				.source(new SearchSourceBuilder().from(20).size(size).sort("price", SortOrder.DESC));
+	}
+
+	@Test
+	public void encodesTheNextPageAndDecodesIt() {
+		String token = PointInTimeCursor.next(response("pit-2", new Object[]{5L, "a"}, new Object[]{9L, "b"}), 2);
+		assertNotNull(token);
+
+		SearchRequest page = PointInTimeCursor.decode(token).apply(request(2), "1m");
+		assertEquals("pit-2", page.source().pointInTimeBuilder().getEncodedId());
+		assertArrayEquals(new Object[]{9, "b"}, page.source().searchAfter());
+	}
+
+	@Test
+	public void hasNoNextPageAfterAShortPage() {
+		assertNull(PointInTimeCursor.next(response("pit-2", new Object[]{5L}), 2));
+		assertNull(PointInTimeCursor.next(response("pit-2"), 2));
+	}
+
+	@Test(expected = ValidateException.class)
+	public void rejectsGarbage() {
+		PointInTimeCursor.decode("not a cursor");
+	}
+
+	@Test(expected = ValidateException.class)
+	public void rejectsTokensWithoutSearchAfter() {
+		PointInTimeCursor.decode(Base64.getUrlEncoder().encodeToString("{\"p\":\"pit-1\"}".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void bindsRoutingAndPreferenceWhenOpening() {
+		OpenPointInTimeRequest open = PointInTimeCursor.openRequest(request(2), "2m");
+		assertArrayEquals(new String[]{"phone"}, open.indices());
+		assertEquals("tenant-42", open.routing());
+		assertEquals("tenant-42", open.preference());
+		assertEquals("2m", open.keepAlive().getStringRep());
+	}
+
+	@Test
+	public void stripsIndicesRoutingAndPreferenceFromPages() {
+		SearchRequest page = PointInTimeCursor.of("pit-1").apply(request(2), "1m");
+		assertEquals(0, page.indices().length);
+		assertNull(page.routing());
+		assertNull(page.preference());
+		assertEquals(0, page.source().from());
+		assertEquals("pit-1", page.source().pointInTimeBuilder().getEncodedId());
+		assertEquals("1m", page.source().pointInTimeBuilder().getKeepAlive().getStringRep());
+		assertNull(page.source().searchAfter());
+
+		assertEquals(2, page.source().sorts().size());
+		assertEquals("price", ((FieldSortBuilder) page.source().sorts().get(0)).getFieldName());
+		assertEquals(FieldSortBuilder.SHARD_DOC_FIELD_NAME, ((FieldSortBuilder) page.source().sorts().get(1)).getFieldName());
+	}
+
+	@Test
+	public void sortsByScoreWithoutSorts() {
+		SearchRequest request = new SearchRequest("phone").source(new SearchSourceBuilder().size(2));
+		SearchRequest page = PointInTimeCursor.of("pit-1").apply(request, "1m");
+		assertTrue(page.source().sorts().get(0) instanceof ScoreSortBuilder);
+		assertEquals(FieldSortBuilder.SHARD_DOC_FIELD_NAME, ((FieldSortBuilder) page.source().sorts().get(1)).getFieldName());
+	}
+
+	@Test
+	public void advancesToThePageAfterAFullOne() {
+		SearchRequest page = PointInTimeCursor.of("pit-1").apply(request(2), "1m");
+		assertNull(PointInTimeCursor.advance(page, response("pit-2", new Object[]{5L}), "1m"));
+
+		SearchRequest next = PointInTimeCursor.advance(page, response("pit-2", new Object[]{5L}, new Object[]{9L}), "1m");
+		assertEquals("pit-2", next.source().pointInTimeBuilder().getEncodedId());
+		assertArrayEquals(new Object[]{9L}, next.source().searchAfter());
+	}
+
+	private static ElasticsearchService service(StubCluster cluster) {
+		ElasticsearchService service = new ElasticsearchService();
+		Whitebox.setInternalState(service, "client", cluster.client());
+		Whitebox.setInternalState(service, "properties", new CustomElasticsearchProperties());
+		service.setDocumentMapper(new JacksonDocumentMapper());
+		return service;
+	}
+
+	private static PagedRequestDTO page(String cursor) {
+		PagedRequestDTO page = new PagedRequestDTO();
+		page.setCursor(cursor);
+		return page;
+	}
+
+	private static long closes(StubCluster cluster) {
+		return cluster.requests().stream().filter(r -> "DELETE".equals(r.method) && "/_pit".equals(r.path)).count();
+	}
+
+	@Test
+	public void keepsTheCursorOfAPageThatCanBeRetried() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			String cursor = PointInTimeCursor.next(response("pit-1", new Object[]{5L}), 1);
+			cluster.respond(r -> StubCluster.Reply.status(429, "es_rejected_execution_exception"));
+
+			CursorPageDTO<Map> result = service(cluster).searchWithCursor(request(1), page(cursor), Map.class);
+			assertTrue(result.getContent().isEmpty());
+			assertEquals(cursor, result.getNextCursor());
+			assertEquals(0, closes(cluster));
+		}
+	}
+
+	@Test
+	public void closesThePointInTimeOfACursorThatFailedForGood() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			String cursor = PointInTimeCursor.next(response("pit-1", new Object[]{5L}), 1);
+			cluster.respond(r -> "DELETE".equals(r.method)
+					? StubCluster.Reply.ok("{\"succeeded\":true,\"num_freed\":1}")
+					: StubCluster.Reply.status(400, "parsing_exception"));
+
+			CursorPageDTO<Map> result = service(cluster).searchWithCursor(request(1), page(cursor), Map.class);
+			assertNull(result.getNextCursor());
+			assertEquals(1, closes(cluster));
+		}
+	}
+
+	@Test
+	public void closesThePointInTimeItOpened() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			cluster.respond(r -> {
+				if (r.path.endsWith("/_pit") && "POST".equals(r.method)) {
+					return StubCluster.Reply.ok("{\"id\":\"pit-1\"}");
+				}
+				if ("DELETE".equals(r.method)) {
+					return StubCluster.Reply.ok("{\"succeeded\":true,\"num_freed\":1}");
+				}
+				return StubCluster.Reply.status(503, "unavailable_shards_exception");
+			});
+
+			CursorPageDTO<Map> result = service(cluster).searchWithCursor(request(1), page(null), Map.class);
+			assertNull(result.getNextCursor());
+			assertEquals(1, closes(cluster));
+		}
+	}
+
+	@Test
+	public void returnsTheFirstPageWithItsCursor() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			cluster.respond(r -> r.path.endsWith("/_pit")
+					? StubCluster.Reply.ok("{\"id\":\"pit-1\"}")
+					: StubCluster.Reply.ok(StubCluster.searchResponse("pit-2", "phone", "1")));
+
+			CursorPageDTO<Map> result = service(cluster).searchWithCursor(request(1), page(null), Map.class);
+			assertEquals("1", result.getContent().get(0).get("name"));
+			assertEquals("pit-2", PointInTimeCursor.decode(result.getNextCursor()).getPointInTimeId());
+			assertEquals("/phone/_pit", cluster.requests().get(0).path);
+			assertTrue(cluster.requests().get(0).query.contains("routing=tenant-42"));
+			assertEquals("/_search", cluster.requests().get(1).path);
+		}
+	}
+}
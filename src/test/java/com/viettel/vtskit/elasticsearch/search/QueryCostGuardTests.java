@@ -0,0 +1,91 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.exception.ValidateException;
+import com.viettel.vtskit.elasticsearch.metrics.SearchMetrics;
+import org.elasticsearch.index.query.PrefixQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RegexpQueryBuilder;
+import org.elasticsearch.index.query.WildcardQueryBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryCostGuardTests {
+
+	private final CustomElasticsearchProperties.QueryGuard properties = new CustomElasticsearchProperties.QueryGuard();
+	private final QueryCostGuard guard = new QueryCostGuard(properties, SearchMetrics.NOOP);
+
+	@Test
+	public void classifiesWildcards() {
+		assertEquals(QueryCostGuard.Cost.LITERAL, guard.wildcardCost("iphone"));
+		assertEquals(QueryCostGuard.Cost.LITERAL, guard.wildcardCost("iph\\*"));
+		assertEquals(QueryCostGuard.Cost.PREFIX, guard.wildcardCost("iph*"));
+		assertEquals(QueryCostGuard.Cost.BOUNDED, guard.wildcardCost("iph?ne"));
+		assertEquals(QueryCostGuard.Cost.BOUNDED, guard.wildcardCost("ip*e"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.wildcardCost("i?hone"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.wildcardCost("*phone"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.wildcardCost("*"));
+	}
+
+	@Test
+	public void classifiesRegexps() {
+		assertEquals(QueryCostGuard.Cost.LITERAL, guard.regexpCost("iphone"));
+		assertEquals(QueryCostGuard.Cost.LITERAL, guard.regexpCost("^iphone$"));
+		assertEquals(QueryCostGuard.Cost.PREFIX, guard.regexpCost("iph.*"));
+		assertEquals(QueryCostGuard.Cost.PREFIX, guard.regexpCost("^iph.*$"));
+		assertEquals(QueryCostGuard.Cost.BOUNDED, guard.regexpCost("iph[o0]ne"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.regexpCost("ip?hone"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.regexpCost(".*phone"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.regexpCost("iphone|.*pad"));
+		assertEquals(QueryCostGuard.Cost.EXPENSIVE, guard.regexpCost("(ip|ga)laxy"));
+	}
+
+	@Test
+	public void stripsAnchors() {
+		assertEquals("iph.*", QueryCostGuard.stripAnchors("^iph.*$"));
+		assertEquals("iph", QueryCostGuard.stripAnchors("^iph"));
+		assertEquals("iph", QueryCostGuard.stripAnchors("iph$"));
+		assertEquals("iph\\$", QueryCostGuard.stripAnchors("iph\\$"));
+		assertEquals("iph\\\\", QueryCostGuard.stripAnchors("iph\\\\$"));
+		assertEquals("", QueryCostGuard.stripAnchors("^$"));
+		assertEquals("", QueryCostGuard.stripAnchors("^"));
+	}
+
+	@Test
+	public void rewritesPrefixesAndLeadingWildcards() {
+		assertTrue(guard.wildcard("phone", "name", "iph*") instanceof PrefixQueryBuilder);
+		assertTrue(guard.regexp("phone", "name", "^iph.*$") instanceof PrefixQueryBuilder);
+
+		properties.setWildcardSubfield("wildcard");
+		assertEquals("name.wildcard", ((WildcardQueryBuilder) guard.wildcard("phone", "name", "*phone")).fieldName());
+		assertEquals("name.wildcard", ((RegexpQueryBuilder) guard.regexp("phone", "name", ".*phone")).fieldName());
+	}
+
+	@Test(expected = ValidateException.class)
+	public void rejectsExpensivePatterns() {
+		guard.wildcard("phone", "name", "*phone");
+	}
+
+	@Test
+	public void capsOnlyPatternsWithALiteralPrefix() {
+		properties.setPolicy(CustomElasticsearchProperties.QueryGuardPolicy.CAP);
+		properties.setMinPrefixLength(3);
+		WildcardQueryBuilder capped = (WildcardQueryBuilder) guard.wildcard("phone", "name", "ip?one");
+		assertEquals("name", capped.fieldName());
+		assertEquals("top_terms_100", capped.rewrite());
+
+		try {
+			guard.wildcard("phone", "name", "*phone");
+			throw new AssertionError("leading wildcard was capped");
+		} catch (ValidateException expected) {
+			// top_terms does not bound the term scan
+		}
+
+		properties.setRewrite(false);
+		properties.setWildcardSubfield("wildcard");
+		QueryBuilder subfield = guard.regexp("phone", "name", ".*phone");
+		assertEquals("name.wildcard", ((RegexpQueryBuilder) subfield).fieldName());
+	}
+}
@@ -0,0 +1,150 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.vtskit.elasticsearch.StubCluster;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SearchBatcherTests {
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	private StubCluster cluster;
+
+	@Before
+	public void startCluster() throws Exception {
+		cluster = new StubCluster();
+		// Every index answers with a single hit whose id is the index name; "missing" does not exist
+		cluster.respond(request -> {
+			if (request.path.equals("/_msearch")) {
+				return StubCluster.Reply.ok(multiSearchResponse(request.body));
+			}
+			final String index = request.path.substring(1, request.path.indexOf('/', 1));
+			return index.equals("missing")
+					? StubCluster.Reply.status(404, "index_not_found_exception")
+					: StubCluster.Reply.ok(StubCluster.searchResponse(null, index, index));
+		});
+	}
+
+	@After
+	public void stopCluster() throws Exception {
+		cluster.close();
+	}
+
+	private static String multiSearchResponse(String body) throws Exception {
+		final List<String> items = new ArrayList<>();
+		final String[] lines = body.split("\n");
+		for (int i = 0; i < lines.length; i += 2) {
+			final JsonNode index = JSON.readTree(lines[i]).get("index");
+			final String name = index.isArray() ? index.get(0).asText() : index.asText();
+			items.add(name.equals("missing")
+					? "{\"error\":{\"type\":\"index_not_found_exception\",\"reason\":\"no such index\"},\"status\":404}"
+					: StubCluster.searchResponse(null, name, name).replaceFirst("^\\{", "{\"status\":200,"));
+		}
+		return "{\"took\":1,\"responses\":[" + String.join(",", items) + "]}";
+	}
+
+	private SearchBatcher batcher(int maxSize, Duration window) {
+		CustomElasticsearchProperties.Batch batch = new CustomElasticsearchProperties.Batch();
+		batch.setMaxSize(maxSize);
+		batch.setWindow(window);
+		return new SearchBatcher(cluster.client(), batch);
+	}
+
+	private static SearchRequest search(String index) {
+		return new SearchRequest(index).source(new SearchSourceBuilder().size(1));
+	}
+
+	private static String hitOf(CompletableFuture<SearchResponse> future) throws Exception {
+		return future.get(5, TimeUnit.SECONDS).getHits().getHits()[0].getId();
+	}
+
+	private long requestsTo(String path) {
+		return cluster.requests().stream().filter(r -> r.path.equals(path)).count();
+	}
+
+	@Test
+	public void routesEveryItemToItsCaller() throws Exception {
+		try (SearchBatcher batcher = batcher(3, Duration.ofSeconds(5))) {
+			CompletableFuture<SearchResponse> a = batcher.submit(search("a"));
+			CompletableFuture<SearchResponse> b = batcher.submit(search("b"));
+			CompletableFuture<SearchResponse> c = batcher.submit(search("c"));
+
+			assertEquals("a", hitOf(a));
+			assertEquals("b", hitOf(b));
+			assertEquals("c", hitOf(c));
+			assertEquals(1, requestsTo("/_msearch"));
+			assertEquals(1, batcher.getBatchCount());
+			assertEquals(3, batcher.getLastBatchSize());
+		}
+	}
+
+	@Test
+	public void failsOnlyTheFailedItem() throws Exception {
+		try (SearchBatcher batcher = batcher(3, Duration.ofSeconds(5))) {
+			CompletableFuture<SearchResponse> a = batcher.submit(search("a"));
+			CompletableFuture<SearchResponse> missing = batcher.submit(search("missing"));
+			CompletableFuture<SearchResponse> c = batcher.submit(search("c"));
+
+			assertEquals("a", hitOf(a));
+			assertEquals("c", hitOf(c));
+			try {
+				missing.get(5, TimeUnit.SECONDS);
+				fail("missing index was found");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ElasticsearchException);
+			}
+		}
+	}
+
+	@Test
+	public void sendsABatchOfOneAsASearch() throws Exception {
+		try (SearchBatcher batcher = batcher(3, Duration.ofMillis(1))) {
+			assertEquals("a", hitOf(batcher.submit(search("a"))));
+			assertEquals(1, requestsTo("/a/_search"));
+			assertEquals(0, requestsTo("/_msearch"));
+		}
+	}
+
+	@Test
+	public void sendsPendingSearchesOnClose() throws Exception {
+		SearchBatcher batcher = batcher(10, Duration.ofSeconds(30));
+		List<CompletableFuture<SearchResponse>> futures = new ArrayList<>();
+		for (String index : new String[]{"a", "b", "c"}) {
+			futures.add(batcher.submit(search(index)));
+		}
+		batcher.close();
+
+		assertEquals("a", hitOf(futures.get(0)));
+		assertEquals("b", hitOf(futures.get(1)));
+		assertEquals("c", hitOf(futures.get(2)));
+		assertEquals(0, requestsTo("/_msearch"));
+		assertEquals(0, batcher.getQueueDepth());
+	}
+
+	@Test
+	public void searchesDirectlyOnceClosed() throws Exception {
+		SearchBatcher batcher = batcher(10, Duration.ofSeconds(30));
+		batcher.close();
+
+		assertEquals("a", hitOf(batcher.submit(search("a"))));
+		assertEquals(1, batcher.getOverflowCount());
+	}
+}
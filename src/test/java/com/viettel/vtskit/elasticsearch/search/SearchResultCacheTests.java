@@ -0,0 +1,113 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchResultCacheTests {
+
+	private final SearchResultCache cache = new SearchResultCache(new CustomElasticsearchProperties.Cache());
+	private final AtomicInteger searches = new AtomicInteger();
+
+	private static SearchResponse response(String... indices) {
+		SearchHit[] hits = new SearchHit[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			hits[i] = new SearchHit(i);
+			hits[i].shard(new SearchShardTarget("node", new ShardId(indices[i], "uuid", 0), null, null));
+		}
+		SearchHits searchHits = new SearchHits(hits, new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), 1f);
+		return new SearchResponse(new SearchResponseSections(searchHits, null, null, false, null, null, 1),
+				null, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+	}
+
+	private void search(String target, String... hitIndices) throws Exception {
+		SearchRequest request = new SearchRequest(target).source(new SearchSourceBuilder().size(1));
+		cache.get(request, String.class, () -> {
+			searches.incrementAndGet();
+			return response(hitIndices);
+		}, r -> Collections.singletonList("hit"));
+	}
+
+	@Test
+	public void servesRepeatedSearches() throws Exception {
+		search("phone", "phone");
+		search("phone", "phone");
+		assertEquals(1, searches.get());
+	}
+
+	@Test
+	public void keepsEntriesOfOtherConcreteIndices() throws Exception {
+		search("phone", "phone");
+		cache.invalidate("laptop");
+		search("phone", "phone");
+		assertEquals(1, searches.get());
+
+		cache.invalidate("phone");
+		search("phone", "phone");
+		assertEquals(2, searches.get());
+	}
+
+	@Test
+	public void dropsPatternsAliasesAndEmptyResults() throws Exception {
+		search("phone*", "phone-1");
+		search("phones", "phone-1");
+		search("tablet");
+		cache.invalidate("laptop");
+		search("phone*", "phone-1");
+		search("phones", "phone-1");
+		search("tablet");
+		assertEquals(6, searches.get());
+	}
+
+	@Test
+	public void invalidatesByPattern() throws Exception {
+		search("phone-1", "phone-1");
+		cache.invalidate("phone-*");
+		search("phone-1", "phone-1");
+		assertEquals(2, searches.get());
+	}
+
+	@Test
+	public void doesNotCacheSearchesRunningDuringInvalidation() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch invalidated = new CountDownLatch(1);
+		Thread loader = new Thread(() -> {
+			try {
+				cache.get(new SearchRequest("phone").source(new SearchSourceBuilder()), String.class, () -> {
+					searches.incrementAndGet();
+					started.countDown();
+					invalidated.await();
+					return response("phone");
+				}, r -> Collections.singletonList("stale"));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		loader.start();
+		started.await();
+		cache.invalidate("phone");
+		invalidated.countDown();
+		loader.join();
+
+		cache.get(new SearchRequest("phone").source(new SearchSourceBuilder()), String.class, () -> {
+			searches.incrementAndGet();
+			return response("phone");
+		}, r -> Collections.singletonList("fresh"));
+		assertEquals(2, searches.get());
+	}
+}
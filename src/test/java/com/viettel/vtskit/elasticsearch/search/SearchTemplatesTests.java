@@ -0,0 +1,240 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.vtskit.elasticsearch.StubCluster;
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import com.viettel.vtskit.elasticsearch.request.SearchRequestDTO;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.script.TemplateScript;
+import org.elasticsearch.script.mustache.MustacheScriptEngine;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTemplatesTests {
+
+	public static class Phone {
+		public String name;
+		public long price;
+	}
+
+	private static SearchRequestDTO request(String text) {
+		SearchRequestDTO request = new SearchRequestDTO();
+		request.setTextSearch(text);
+		request.setPage(2);
+		request.setSize(5);
+		request.setFields(Arrays.asList("name", "description"));
+		Map<String, Float> weights = new LinkedHashMap<>();
+		weights.put("name", 3f);
+		weights.put("description", 1f);
+		request.setFieldsAndWeights(weights);
+		request.setTimeField("releasedAt");
+		request.setFrom(Instant.parse("2024-01-01T00:00:00Z"));
+		request.setTo(Instant.parse("2024-06-30T00:00:00Z"));
+		request.setSortBy("price");
+		request.setOrderBy(SortOrder.DESC);
+		return request;
+	}
+
+	private static SearchRequest built(SearchOperation operation, SearchRequestDTO request) {
+		switch (operation) {
+			case MULTI_FIELD:
+				return ElasticSearchBuilder.buildMultiFieldSearchRequest("phone", request, Phone.class);
+			case FUZZY:
+				return ElasticSearchBuilder.buildFuzzySearchRequest("phone", request, Phone.class);
+			case MATCH_PHRASE:
+				return ElasticSearchBuilder.buildMatchPhraseSearchRequest("phone", request, Phone.class);
+			case MATCH_PHRASE_PREFIX:
+				return ElasticSearchBuilder.buildMatchPhrasePrefixSearchRequest("phone", request, Phone.class);
+			default:
+				return ElasticSearchBuilder.buildBoostingSearchRequest("phone", request, Phone.class);
+		}
+	}
+
+	private static SearchTemplates clientTemplates() {
+		CustomElasticsearchProperties.Template properties = new CustomElasticsearchProperties.Template();
+		properties.setMode(CustomElasticsearchProperties.TemplateMode.CLIENT);
+		return new SearchTemplates(null, properties);
+	}
+
+	@Test
+	public void rendersTheBodyTheBuilderWouldSend() {
+		SearchTemplates templates = clientTemplates();
+		for (SearchOperation operation : Arrays.asList(SearchOperation.MULTI_FIELD, SearchOperation.FUZZY,
+				SearchOperation.MATCH_PHRASE, SearchOperation.MATCH_PHRASE_PREFIX, SearchOperation.BOOSTING)) {
+			for (String text : Arrays.asList("iphone", "say \"hi\" \\ {{text}} \u00e9\u0001")) {
+				SearchRequestDTO request = request(text);
+				assertEquals(operation + " " + text,
+						Strings.toString(built(operation, request).source()),
+						templates.template(operation, request, Phone.class).render(request));
+			}
+		}
+	}
+
+	@Test
+	public void rendersAnOpenTimeRange() {
+		SearchTemplates templates = clientTemplates();
+		SearchRequestDTO request = request("iphone");
+		request.setTo(null);
+		request.setPage(0);
+		assertEquals(Strings.toString(built(SearchOperation.FUZZY, request).source()),
+				templates.template(SearchOperation.FUZZY, request, Phone.class).render(request));
+	}
+
+	@Test
+	public void countsHitsUpToTheDefaultThresholdUnlessTold() {
+		SearchTemplates templates = clientTemplates();
+		SearchRequestDTO request = request("iphone");
+		assertTrue(templates.template(SearchOperation.FUZZY, request, Phone.class).render(request).contains("\"track_total_hits\":10000"));
+
+		request.setTrackTotalHitsUpTo(-1);
+		assertTrue(templates.template(SearchOperation.FUZZY, request, Phone.class).render(request).contains("\"track_total_hits\":-1"));
+		request.setTrackTotalHitsUpTo(100);
+		assertTrue(templates.template(SearchOperation.FUZZY, request, Phone.class).render(request).contains("\"track_total_hits\":100"));
+	}
+
+	@Test
+	public void sharesTemplatesBetweenRequestsOfTheSameShape() {
+		SearchTemplates templates = clientTemplates();
+		SearchRequestDTO first = request("iphone");
+		SearchRequestDTO second = request("galaxy");
+		second.setPage(7);
+		second.setFrom(Instant.parse("2025-01-01T00:00:00Z"));
+		assertNull(templates.register(SearchOperation.FUZZY, first, Phone.class));
+		templates.register(SearchOperation.FUZZY, second, Phone.class);
+		assertEquals(1, templates.size());
+
+		second.setFields(Collections.singletonList("name"));
+		templates.register(SearchOperation.FUZZY, second, Phone.class);
+		templates.register(SearchOperation.BOOSTING, first, Phone.class);
+		assertEquals(3, templates.size());
+	}
+
+	@Test
+	public void storedSourceRendersLikeTheClient() throws Exception {
+		SearchRequestDTO request = request("say \"hi\" \\ \u00e9");
+		SearchTemplates.Template template = clientTemplates().template(SearchOperation.BOOSTING, request, Phone.class);
+		Map<String, Object> params = new HashMap<>();
+		params.put("text", request.getTextSearch());
+		params.put("from", 10);
+		params.put("size", 5);
+		params.put("time_from", request.getFrom().toString());
+		params.put("time_to", request.getTo().toString());
+
+		String rendered = new MustacheScriptEngine()
+				.compile("phone", template.skeleton, TemplateScript.CONTEXT, Collections.emptyMap())
+				.newInstance(params)
+				.execute();
+
+		ObjectMapper mapper = new ObjectMapper();
+		assertEquals(mapper.readTree(template.render(request)), mapper.readTree(rendered));
+	}
+
+	@Test
+	public void splicesEveryPlaceholder() {
+		SearchTemplates.Template template = new SearchTemplates.Template(
+				"{\"from\":{{from}},\"size\":{{size}},\"a\":\"{{text}}\",\"b\":[\"{{time_from}}\",\"{{time_to}}\",\"{{text}}\"]}");
+		SearchRequestDTO request = request("x\ny");
+		request.setPage(0);
+		assertEquals("{\"from\":0,\"size\":5,\"a\":\"x\\ny\",\"b\":[\"2024-01-01T00:00:00Z\",\"2024-06-30T00:00:00Z\",\"x\\ny\"]}",
+				template.render(request));
+	}
+
+	@Test
+	public void encodesIndexNamesAndCarriesRequestOptions() {
+		SearchRequest searchRequest = new SearchRequest("<logs-{now/d}>", "logs-2024.01.01")
+				.routing("tenant-1")
+				.preference("tenant-1")
+				.indicesOptions(IndicesOptions.lenientExpandOpen())
+				.requestCache(false)
+				.allowPartialSearchResults(false);
+
+		Request request = SearchTemplates.renderedRequest(searchRequest, "{}");
+
+		assertEquals("/%3Clogs-%7Bnow%2Fd%7D%3E,logs-2024.01.01/_search", request.getEndpoint());
+		Map<String, String> parameters = request.getParameters();
+		assertEquals("tenant-1", parameters.get("routing"));
+		assertEquals("tenant-1", parameters.get("preference"));
+		assertEquals("true", parameters.get("ignore_unavailable"));
+		assertEquals("true", parameters.get("allow_no_indices"));
+		assertEquals("open", parameters.get("expand_wildcards"));
+		assertEquals("false", parameters.get("request_cache"));
+		assertEquals("false", parameters.get("allow_partial_search_results"));
+	}
+
+	@Test
+	public void quotesTheTextAndKeepsPlaceholdersInItLiterally() {
+		SearchTemplates.Template template = new SearchTemplates.Template("{\"a\":\"{{text}}\",\"size\":{{size}}}");
+		SearchRequestDTO request = request("say \"hi\" \\ {{text}} {{size}}");
+		assertEquals("{\"a\":\"say \\\"hi\\\" \\\\ {{text}} {{size}}\",\"size\":5}", template.render(request));
+	}
+
+	@Test
+	public void rendersAShapeWithoutATimeRange() {
+		SearchTemplates templates = clientTemplates();
+		SearchRequestDTO request = request("iphone");
+		request.setTimeField(null);
+		SearchTemplates.Template template = templates.template(SearchOperation.MULTI_FIELD, request, Phone.class);
+		assertFalse(template.skeleton.contains("time_from"));
+		assertFalse(template.skeleton.contains("time_to"));
+		assertEquals(Strings.toString(built(SearchOperation.MULTI_FIELD, request).source()), template.render(request));
+	}
+
+	@Test
+	public void rendersOnTheClientUntilTheTemplateIsStored() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			cluster.respond(r -> r.path.startsWith("/_scripts/")
+					? StubCluster.Reply.ok("{\"acknowledged\":true}")
+					: StubCluster.Reply.ok(StubCluster.searchResponse(null, "phone", "1")));
+			SearchTemplates templates = new SearchTemplates(cluster.client(), new CustomElasticsearchProperties.Template());
+			SearchRequestDTO request = request("iphone");
+
+			templates.searchAsync(SearchOperation.FUZZY, new SearchRequest("phone"), request, Phone.class).get(10, TimeUnit.SECONDS);
+			assertTrue(cluster.requests().stream().anyMatch(r -> "/phone/_search".equals(r.path)));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			String id;
+			while ((id = templates.register(SearchOperation.FUZZY, request, Phone.class)) == null && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, cluster.requests().stream().filter(r -> r.path.startsWith("/_scripts/")).count());
+			assertEquals("/_scripts/" + id, cluster.requests().stream().filter(r -> r.path.startsWith("/_scripts/")).findFirst().get().path);
+
+			templates.searchAsync(SearchOperation.FUZZY, new SearchRequest("phone"), request("galaxy"), Phone.class).get(10, TimeUnit.SECONDS);
+			StubCluster.Request last = cluster.requests().get(cluster.requests().size() - 1);
+			assertEquals("/phone/_search/template", last.path);
+			assertTrue(last.body.contains(id));
+		}
+	}
+
+	@Test
+	public void registerWaitsForTheTemplateToBeStored() throws Exception {
+		try (StubCluster cluster = new StubCluster()) {
+			cluster.respond(r -> StubCluster.Reply.ok("{\"acknowledged\":true}"));
+			SearchTemplates templates = new SearchTemplates(cluster.client(), new CustomElasticsearchProperties.Template());
+
+			String id = templates.register(SearchOperation.BOOSTING, request("iphone"), Phone.class);
+			assertTrue(id.startsWith(new CustomElasticsearchProperties.Template().getIdPrefix()));
+			assertEquals(1, cluster.requests().size());
+			assertEquals("/_scripts/" + id, cluster.requests().get(0).path);
+
+			cluster.respond(r -> StubCluster.Reply.status(500, "no_more_puts"));
+			assertEquals(id, templates.register(SearchOperation.BOOSTING, request("galaxy"), Phone.class));
+			assertEquals(1, cluster.requests().size());
+		}
+	}
+}
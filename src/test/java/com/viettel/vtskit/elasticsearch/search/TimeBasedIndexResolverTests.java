@@ -0,0 +1,72 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import com.viettel.vtskit.elasticsearch.configuration.CustomElasticsearchProperties;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeBasedIndexResolverTests {
+
+	private static TimeBasedIndexResolver resolver(String datePattern, String zone) {
+		CustomElasticsearchProperties.IndexResolver properties = new CustomElasticsearchProperties.IndexResolver();
+		properties.setDatePattern(datePattern);
+		properties.setZone(ZoneId.of(zone));
+		return new TimeBasedIndexResolver(null, properties);
+	}
+
+	private static Instant at(String instant) {
+		return Instant.parse(instant);
+	}
+
+	@Test
+	public void matchesDailyIndicesInRange() {
+		TimeBasedIndexResolver resolver = resolver("yyyy.MM.dd", "UTC");
+		Instant from = at("2024-01-31T23:00:00Z");
+		Instant to = at("2024-02-01T00:00:00Z");
+		assertFalse(resolver.overlaps("logs-2024.01.30", from, to));
+		assertTrue(resolver.overlaps("logs-2024.01.31", from, to));
+		assertTrue(resolver.overlaps("logs-2024.02.01", from, to));
+		assertFalse(resolver.overlaps("logs-2024.02.02", from, to));
+	}
+
+	@Test
+	public void treatsTheEndOfAPeriodAsExclusive() {
+		TimeBasedIndexResolver resolver = resolver("yyyy.MM.dd", "UTC");
+		assertFalse(resolver.overlaps("logs-2024.01.31", at("2024-02-01T00:00:00Z"), null));
+		assertTrue(resolver.overlaps("logs-2024.01.31", at("2024-01-31T23:59:59Z"), null));
+		assertTrue(resolver.overlaps("logs-2024.02.01", null, at("2024-02-01T00:00:00Z")));
+		assertFalse(resolver.overlaps("logs-2024.02.02", null, at("2024-02-01T23:59:59Z")));
+	}
+
+	@Test
+	public void usesTheSmallestUnitOfThePattern() {
+		TimeBasedIndexResolver hourly = resolver("yyyy.MM.dd.HH", "UTC");
+		assertTrue(hourly.overlaps("logs-2024.01.31.10", at("2024-01-31T10:30:00Z"), at("2024-01-31T10:40:00Z")));
+		assertFalse(hourly.overlaps("logs-2024.01.31.09", at("2024-01-31T10:30:00Z"), at("2024-01-31T10:40:00Z")));
+
+		TimeBasedIndexResolver monthly = resolver("yyyy.MM", "UTC");
+		assertTrue(monthly.overlaps("metrics-2024.02", at("2024-02-29T12:00:00Z"), at("2024-02-29T13:00:00Z")));
+		assertFalse(monthly.overlaps("metrics-2024.03", at("2024-02-29T12:00:00Z"), at("2024-02-29T13:00:00Z")));
+	}
+
+	@Test
+	public void readsDatesInTheConfiguredZone() {
+		TimeBasedIndexResolver resolver = resolver("yyyy.MM.dd", "Asia/Ho_Chi_Minh");
+		// 2024-01-31 in UTC+7 is 2024-01-30T17:00Z to 2024-01-31T17:00Z
+		assertTrue(resolver.overlaps("logs-2024.01.31", at("2024-01-30T18:00:00Z"), at("2024-01-30T19:00:00Z")));
+		assertFalse(resolver.overlaps("logs-2024.01.31", at("2024-01-31T18:00:00Z"), at("2024-01-31T19:00:00Z")));
+	}
+
+	@Test
+	public void alwaysSearchesIndicesWithoutADate() {
+		TimeBasedIndexResolver resolver = resolver("yyyy.MM.dd", "UTC");
+		Instant from = at("2024-01-31T00:00:00Z");
+		assertTrue(resolver.overlaps("phone", from, from));
+		assertTrue(resolver.overlaps("phone-catalog", from, from));
+		assertTrue(resolver.overlaps("logs-2024.13.45", from, from));
+	}
+}
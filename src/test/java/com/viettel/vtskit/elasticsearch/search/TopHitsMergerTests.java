@@ -0,0 +1,109 @@
+package com.viettel.vtskit.elasticsearch.search;
+
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopHitsMergerTests {
+
+	private static SearchHit sorted(Object... values) {
+		SearchHit hit = new SearchHit(0);
+		DocValueFormat[] formats = new DocValueFormat[values.length];
+		Arrays.fill(formats, DocValueFormat.RAW);
+		hit.sortValues(values, formats);
+		return hit;
+	}
+
+	private static SearchHit scored(float score) {
+		SearchHit hit = new SearchHit(0);
+		hit.score(score);
+		return hit;
+	}
+
+	private static List<int[]> merge(Comparator<SearchHit> order, int from, int size, SearchHit[]... lists) {
+		return TopHitsMerger.merge(Arrays.asList(lists), order, from, size);
+	}
+
+	private static void assertMerged(List<int[]> merged, int[]... expected) {
+		assertEquals(expected.length, merged.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals("rank " + i, expected[i], merged.get(i));
+		}
+	}
+
+	@Test
+	public void ordersByScoreWithoutSorts() {
+		Comparator<SearchHit> order = TopHitsMerger.order(new SearchSourceBuilder());
+		assertTrue(order.compare(scored(2f), scored(1f)) < 0);
+		assertMerged(merge(order, 0, 4,
+				new SearchHit[]{scored(5f), scored(1f)},
+				new SearchHit[]{scored(3f), scored(2f)}),
+				new int[]{0, 0}, new int[]{1, 0}, new int[]{1, 1}, new int[]{0, 1});
+	}
+
+	@Test
+	public void ordersAscendingAndDescending() {
+		Comparator<SearchHit> ascending = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.ASC));
+		Comparator<SearchHit> descending = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.DESC));
+		assertTrue(ascending.compare(sorted(1L), sorted(2L)) < 0);
+		assertTrue(descending.compare(sorted(1L), sorted(2L)) > 0);
+		assertTrue(ascending.compare(sorted(2), sorted(10L)) < 0);
+		assertTrue(ascending.compare(sorted(1.5d), sorted(2L)) < 0);
+		assertTrue(ascending.compare(sorted("a"), sorted("b")) < 0);
+
+		assertMerged(merge(ascending, 0, 5,
+				new SearchHit[]{sorted(1L), sorted(4L), sorted(9L)},
+				new SearchHit[]{sorted(2L), sorted(3L)}),
+				new int[]{0, 0}, new int[]{1, 0}, new int[]{1, 1}, new int[]{0, 1}, new int[]{0, 2});
+	}
+
+	@Test
+	public void comparesLaterSortsOnTies() {
+		Comparator<SearchHit> order = TopHitsMerger.order(new SearchSourceBuilder()
+				.sort("brand", SortOrder.ASC).sort("price", SortOrder.DESC));
+		assertTrue(order.compare(sorted("a", 1L), sorted("a", 2L)) > 0);
+		assertTrue(order.compare(sorted("a", 1L), sorted("b", 9L)) < 0);
+	}
+
+	@Test
+	public void sortsMissingValuesLast() {
+		Comparator<SearchHit> ascending = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.ASC));
+		Comparator<SearchHit> descending = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.DESC));
+		assertTrue(ascending.compare(sorted((Object) null), sorted(1L)) > 0);
+		assertTrue(descending.compare(sorted((Object) null), sorted(1L)) > 0);
+		assertEquals(0, ascending.compare(sorted((Object) null), sorted((Object) null)));
+	}
+
+	@Test
+	public void breaksTiesByListThenPosition() {
+		Comparator<SearchHit> order = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.ASC));
+		assertMerged(merge(order, 0, 4,
+				new SearchHit[]{sorted(1L), sorted(1L)},
+				new SearchHit[]{sorted(1L), sorted(1L)}),
+				new int[]{0, 0}, new int[]{0, 1}, new int[]{1, 0}, new int[]{1, 1});
+	}
+
+	@Test
+	public void pagesWithFromAndSize() {
+		Comparator<SearchHit> order = TopHitsMerger.order(new SearchSourceBuilder().sort("price", SortOrder.ASC));
+		SearchHit[] first = {sorted(1L), sorted(3L), sorted(5L)};
+		SearchHit[] second = {sorted(2L), sorted(4L)};
+		SearchHit[] empty = {};
+
+		assertMerged(merge(order, 2, 2, first, empty, second), new int[]{0, 1}, new int[]{2, 1});
+		assertMerged(merge(order, 4, 10, first, empty, second), new int[]{0, 2});
+		assertEquals(0, merge(order, 5, 10, first, empty, second).size());
+		assertEquals(0, TopHitsMerger.merge(new ArrayList<>(), order, 0, 10).size());
+	}
+}